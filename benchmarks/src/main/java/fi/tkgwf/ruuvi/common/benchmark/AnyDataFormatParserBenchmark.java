@@ -0,0 +1,66 @@
+package fi.tkgwf.ruuvi.common.benchmark;
+
+import fi.tkgwf.ruuvi.common.bean.PrimitiveRuuviMeasurement;
+import fi.tkgwf.ruuvi.common.bean.RuuviMeasurement;
+import fi.tkgwf.ruuvi.common.parser.ParseStatus;
+import fi.tkgwf.ruuvi.common.parser.impl.AnyDataFormatParser;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Dispatch and decode cost of {@link AnyDataFormatParser} for every data
+ * format, including packets that are rejected.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AnyDataFormatParserBenchmark {
+
+    @Param({ "DF2", "DF3", "DF4", "DF5", "DF5_NOT_AVAILABLE", "DF6", "DF6_NOT_AVAILABLE", "E1", "E1_NOT_AVAILABLE",
+            "UNKNOWN_FORMAT", "NOT_RUUVI" })
+    public String payload;
+
+    private final AnyDataFormatParser parser = new AnyDataFormatParser();
+    private final PrimitiveRuuviMeasurement measurement = new PrimitiveRuuviMeasurement();
+    private final byte[] buffer = new byte[64];
+    private byte[] data;
+    private String hex;
+
+    @Setup
+    public void setup() {
+        data = Payloads.get(payload);
+        StringBuilder sb = new StringBuilder();
+        for (byte b : data) {
+            sb.append(String.format("%02X", b));
+        }
+        hex = sb.toString();
+    }
+
+    @Benchmark
+    public RuuviMeasurement parse() {
+        return parser.parse(data);
+    }
+
+    @Benchmark
+    public ParseStatus parsePrimitive() {
+        return parser.parse(data, 0, data.length, measurement);
+    }
+
+    @Benchmark
+    public ParseStatus parseHex() {
+        return parser.parseHex(hex, buffer, measurement);
+    }
+}
@@ -0,0 +1,94 @@
+package fi.tkgwf.ruuvi.common.benchmark;
+
+import fi.tkgwf.ruuvi.common.utils.MeasurementValueCalculator;
+import fi.tkgwf.ruuvi.common.utils.PrimitiveMeasurementValueCalculator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost per row of calculating derived values for a column of readings, with
+ * the boxed {@link MeasurementValueCalculator} one row at a time and with the
+ * array methods of {@link PrimitiveMeasurementValueCalculator}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BatchCalculatorBenchmark {
+
+    private static final int ROWS = 1024;
+
+    private final double[] temperature = new double[ROWS];
+    private final double[] humidity = new double[ROWS];
+    private final double[] pressure = new double[ROWS];
+    private final double[] result = new double[ROWS];
+
+    public BatchCalculatorBenchmark() {
+        Random random = new Random(1);
+        for (int i = 0; i < ROWS; i++) {
+            temperature[i] = -20 + random.nextDouble() * 50;
+            humidity[i] = 10 + random.nextDouble() * 90;
+            pressure[i] = 95000 + random.nextDouble() * 10000;
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public double[] dewPointBoxed() {
+        for (int i = 0; i < ROWS; i++) {
+            result[i] = MeasurementValueCalculator.dewPoint(temperature[i], humidity[i]);
+        }
+        return result;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public double[] dewPointBatch() {
+        PrimitiveMeasurementValueCalculator.dewPoint(temperature, humidity, 0, result, 0, ROWS);
+        return result;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public double[] absoluteHumidityBoxed() {
+        for (int i = 0; i < ROWS; i++) {
+            result[i] = MeasurementValueCalculator.absoluteHumidity(temperature[i], humidity[i]);
+        }
+        return result;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public double[] absoluteHumidityBatch() {
+        PrimitiveMeasurementValueCalculator.absoluteHumidity(temperature, humidity, 0, result, 0, ROWS);
+        return result;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public double[] airDensityBoxed() {
+        for (int i = 0; i < ROWS; i++) {
+            result[i] = MeasurementValueCalculator.airDensity(temperature[i], humidity[i], pressure[i]);
+        }
+        return result;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public double[] airDensityBatch() {
+        PrimitiveMeasurementValueCalculator.airDensity(temperature, humidity, pressure, 0, result, 0, ROWS);
+        return result;
+    }
+}
@@ -0,0 +1,104 @@
+package fi.tkgwf.ruuvi.common.benchmark;
+
+import fi.tkgwf.ruuvi.common.bean.RuuviMeasurement;
+import fi.tkgwf.ruuvi.common.parser.impl.DataFormat2Parser;
+import fi.tkgwf.ruuvi.common.parser.impl.DataFormat3Parser;
+import fi.tkgwf.ruuvi.common.parser.impl.DataFormat4Parser;
+import fi.tkgwf.ruuvi.common.parser.impl.DataFormat5Parser;
+import fi.tkgwf.ruuvi.common.parser.impl.DataFormat6Parser;
+import fi.tkgwf.ruuvi.common.parser.impl.DataFormatE1Parser;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Decode cost of each data format parser on its own, for valid packets,
+ * packets with every field "not available" and packets of another format.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DataFormatParserBenchmark {
+
+    private final DataFormat2Parser dataFormat2Parser = new DataFormat2Parser();
+    private final DataFormat3Parser dataFormat3Parser = new DataFormat3Parser();
+    private final DataFormat4Parser dataFormat4Parser = new DataFormat4Parser();
+    private final DataFormat5Parser dataFormat5Parser = new DataFormat5Parser();
+    private final DataFormat6Parser dataFormat6Parser = new DataFormat6Parser();
+    private final DataFormatE1Parser dataFormatE1Parser = new DataFormatE1Parser();
+
+    private byte[] dataFormat2 = Payloads.DATA_FORMAT_2;
+    private byte[] dataFormat3 = Payloads.DATA_FORMAT_3;
+    private byte[] dataFormat4 = Payloads.DATA_FORMAT_4;
+    private byte[] dataFormat5 = Payloads.DATA_FORMAT_5;
+    private byte[] dataFormat5NotAvailable = Payloads.DATA_FORMAT_5_NOT_AVAILABLE;
+    private byte[] dataFormat6 = Payloads.DATA_FORMAT_6;
+    private byte[] dataFormat6NotAvailable = Payloads.DATA_FORMAT_6_NOT_AVAILABLE;
+    private byte[] dataFormatE1 = Payloads.DATA_FORMAT_E1;
+    private byte[] dataFormatE1NotAvailable = Payloads.DATA_FORMAT_E1_NOT_AVAILABLE;
+
+    @Benchmark
+    public RuuviMeasurement dataFormat2() {
+        return dataFormat2Parser.parse(dataFormat2);
+    }
+
+    @Benchmark
+    public RuuviMeasurement dataFormat2RejectsDataFormat4() {
+        return dataFormat2Parser.parse(dataFormat4);
+    }
+
+    @Benchmark
+    public RuuviMeasurement dataFormat3() {
+        return dataFormat3Parser.parse(dataFormat3);
+    }
+
+    @Benchmark
+    public RuuviMeasurement dataFormat4() {
+        return dataFormat4Parser.parse(dataFormat4);
+    }
+
+    @Benchmark
+    public RuuviMeasurement dataFormat5() {
+        return dataFormat5Parser.parse(dataFormat5);
+    }
+
+    @Benchmark
+    public RuuviMeasurement dataFormat5NotAvailable() {
+        return dataFormat5Parser.parse(dataFormat5NotAvailable);
+    }
+
+    @Benchmark
+    public RuuviMeasurement dataFormat5RejectsDataFormat6() {
+        return dataFormat5Parser.parse(dataFormat6);
+    }
+
+    @Benchmark
+    public RuuviMeasurement dataFormat6() {
+        return dataFormat6Parser.parse(dataFormat6);
+    }
+
+    @Benchmark
+    public RuuviMeasurement dataFormat6NotAvailable() {
+        return dataFormat6Parser.parse(dataFormat6NotAvailable);
+    }
+
+    @Benchmark
+    public RuuviMeasurement dataFormatE1() {
+        return dataFormatE1Parser.parse(dataFormatE1);
+    }
+
+    @Benchmark
+    public RuuviMeasurement dataFormatE1NotAvailable() {
+        return dataFormatE1Parser.parse(dataFormatE1NotAvailable);
+    }
+}
@@ -0,0 +1,61 @@
+package fi.tkgwf.ruuvi.common.benchmark;
+
+import fi.tkgwf.ruuvi.common.utils.ByteLookupTable;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of decoding the 8-bit logarithmic luminosity code of data format 6 by
+ * evaluating the formula and by a {@link ByteLookupTable}, over every valid
+ * code. See the dataFormat6 benchmark of {@link DataFormatParserBenchmark} for
+ * the effect on a whole packet.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LuminosityDecodingBenchmark {
+
+    private static final int CODES = 255;
+
+    private final ByteLookupTable table = ByteLookupTable.of(code -> Math.exp(code * (Math.log(65536d) / 254d)) - 1);
+    private final byte[] codes = new byte[CODES];
+
+    public LuminosityDecodingBenchmark() {
+        for (int i = 0; i < CODES; i++) {
+            codes[i] = (byte) i;
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CODES)
+    public double formula() {
+        double sum = 0;
+        for (byte code : codes) {
+            double delta = Math.log(65536d) / 254d;
+            sum += Math.exp((code & 0xFF) * delta) - 1;
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CODES)
+    public double table() {
+        double sum = 0;
+        for (byte code : codes) {
+            sum += table.get(code);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,70 @@
+package fi.tkgwf.ruuvi.common.benchmark;
+
+import fi.tkgwf.ruuvi.common.utils.MeasurementValueCalculator;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of every {@link MeasurementValueCalculator} function. The inputs are
+ * kept in non-final fields so that they are not constant folded.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MeasurementValueCalculatorBenchmark {
+
+    private Double accelerationX = 0.004;
+    private Double accelerationY = -0.004;
+    private Double accelerationZ = 1.036;
+    private Double temperature = 24.3;
+    private Double humidity = 53.49;
+    private Double pressure = 100044.0;
+    private Double pm25 = 11.2;
+    private Integer co2 = 832;
+
+    @Benchmark
+    public Double totalAcceleration() {
+        return MeasurementValueCalculator.totalAcceleration(accelerationX, accelerationY, accelerationZ);
+    }
+
+    @Benchmark
+    public Double angleBetweenVectorComponentAndAxis() {
+        return MeasurementValueCalculator.angleBetweenVectorComponentAndAxis(accelerationZ, accelerationZ);
+    }
+
+    @Benchmark
+    public Double absoluteHumidity() {
+        return MeasurementValueCalculator.absoluteHumidity(temperature, humidity);
+    }
+
+    @Benchmark
+    public Double dewPoint() {
+        return MeasurementValueCalculator.dewPoint(temperature, humidity);
+    }
+
+    @Benchmark
+    public Double equilibriumVaporPressure() {
+        return MeasurementValueCalculator.equilibriumVaporPressure(temperature);
+    }
+
+    @Benchmark
+    public Double airDensity() {
+        return MeasurementValueCalculator.airDensity(temperature, humidity, pressure);
+    }
+
+    @Benchmark
+    public Double airQualityIndex() {
+        return MeasurementValueCalculator.airQualityIndex(pm25, co2);
+    }
+}
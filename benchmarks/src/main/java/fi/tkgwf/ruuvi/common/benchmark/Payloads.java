@@ -0,0 +1,73 @@
+package fi.tkgwf.ruuvi.common.benchmark;
+
+import fi.tkgwf.ruuvi.common.utils.ByteUtils;
+
+/**
+ * Representative raw data packets of every data format, taken from the test
+ * vectors of the parser tests.
+ */
+final class Payloads {
+
+    static final byte[] DATA_FORMAT_2 = eddystone("AjwYAMFc");
+    static final byte[] DATA_FORMAT_3 = manufacturerData("03291A1ECE1EFC18F94202CA0B5300000000BB");
+    static final byte[] DATA_FORMAT_4 = eddystone("AjUX1MAw0");
+    static final byte[] DATA_FORMAT_5 = manufacturerData("0512FC5394C37C0004FFFC040CAC364200CDCBB8334C884F");
+    static final byte[] DATA_FORMAT_5_NOT_AVAILABLE = manufacturerData("058000FFFFFFFF800080008000FFFFFFFFFFFFFFFFFFFFFF");
+    static final byte[] DATA_FORMAT_6 = manufacturerData("06170C5668C79E007000C90501D94ACD004C884F");
+    static final byte[] DATA_FORMAT_6_NOT_AVAILABLE = manufacturerData("068000FFFFFFFFFFFFFFFFFFFFFF00FFFFFFFFFF");
+    static final byte[] DATA_FORMAT_E1 = manufacturerData(
+            "E1170C5668C79E0065007004BD11CA00C9050113E0AC3D4A9CDECDEE00FFFFFFFFFFCBB8334C884F");
+    static final byte[] DATA_FORMAT_E1_NOT_AVAILABLE = manufacturerData(
+            "E18000FFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFF000000FFFFFFFE0000000000FFFFFFFFFFFF");
+    static final byte[] UNKNOWN_FORMAT = manufacturerData("0712FC5394C37C0004FFFC040CAC364200CDCBB8334C884F");
+    static final byte[] NOT_RUUVI = hex("4C000215E2C56DB5DFFB48D2B060D0F5A71096E000010001C5");
+
+    private Payloads() {
+    }
+
+    static byte[] get(String name) {
+        switch (name) {
+            case "DF2":
+                return DATA_FORMAT_2;
+            case "DF3":
+                return DATA_FORMAT_3;
+            case "DF4":
+                return DATA_FORMAT_4;
+            case "DF5":
+                return DATA_FORMAT_5;
+            case "DF5_NOT_AVAILABLE":
+                return DATA_FORMAT_5_NOT_AVAILABLE;
+            case "DF6":
+                return DATA_FORMAT_6;
+            case "DF6_NOT_AVAILABLE":
+                return DATA_FORMAT_6_NOT_AVAILABLE;
+            case "E1":
+                return DATA_FORMAT_E1;
+            case "E1_NOT_AVAILABLE":
+                return DATA_FORMAT_E1_NOT_AVAILABLE;
+            case "UNKNOWN_FORMAT":
+                return UNKNOWN_FORMAT;
+            case "NOT_RUUVI":
+                return NOT_RUUVI;
+            default:
+                throw new IllegalArgumentException("Unknown payload " + name);
+        }
+    }
+
+    private static byte[] eddystone(String hash) {
+        byte[] prefix = hex("AAFE10F803");
+        byte[] url = ("ruu.vi/#" + hash).getBytes();
+        byte[] data = new byte[prefix.length + url.length];
+        System.arraycopy(prefix, 0, data, 0, prefix.length);
+        System.arraycopy(url, 0, data, prefix.length, url.length);
+        return data;
+    }
+
+    private static byte[] manufacturerData(String hex) {
+        return hex("9904" + hex);
+    }
+
+    private static byte[] hex(String hex) {
+        return ByteUtils.decodeHex(hex);
+    }
+}
@@ -0,0 +1,263 @@
+package fi.tkgwf.ruuvi.common.bean;
+
+import java.util.Arrays;
+
+/**
+ * Measurements of many packets stored as columns, one primitive array per
+ * field, ready to be handed to columnar storage without creating an object per
+ * measurement.
+ * <p>
+ * Decimal fields are stored in double arrays and integral fields (see
+ * {@link MeasurementField#isIntegral()}) in int arrays, booleans as 0 or 1.
+ * The MAC address is stored in a long array (see
+ * {@link MeasurementField#isLong()}).
+ * Whether a row has a value for a field is tracked in a bitset per field, a
+ * value of a row without its validity bit set is meaningless.
+ */
+public class MeasurementColumns {
+
+    private static final MeasurementField[] FIELDS = MeasurementField.values();
+
+    private final int capacity;
+    private final int[] dataFormat;
+    private final double[][] doubleColumns;
+    private final int[][] intColumns;
+    private final long[][] longColumns;
+    private final long[][] validity;
+    private int size;
+
+    /**
+     * Creates columns with room for the given number of rows
+     *
+     * @param capacity maximum number of rows
+     */
+    public MeasurementColumns(int capacity) {
+        this.capacity = capacity;
+        this.dataFormat = new int[capacity];
+        this.doubleColumns = new double[FIELDS.length][];
+        this.intColumns = new int[FIELDS.length][];
+        this.longColumns = new long[FIELDS.length][];
+        this.validity = new long[FIELDS.length][(capacity + 63) >>> 6];
+        for (MeasurementField field : FIELDS) {
+            if (field.isLong()) {
+                longColumns[field.ordinal()] = new long[capacity];
+            } else if (field.isIntegral()) {
+                intColumns[field.ordinal()] = new int[capacity];
+            } else {
+                doubleColumns[field.ordinal()] = new double[capacity];
+            }
+        }
+    }
+
+    /**
+     * Gets the maximum number of rows
+     *
+     * @return the capacity
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Gets the number of rows in use
+     *
+     * @return the number of rows
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Sets the number of rows in use and clears their contents: every row
+     * gets data format 0 and no valid fields.
+     *
+     * @param size the number of rows
+     * @throws IllegalArgumentException if size exceeds the capacity
+     */
+    public void reset(int size) {
+        if (size < 0 || size > capacity) {
+            throw new IllegalArgumentException("Size " + size + " exceeds capacity " + capacity);
+        }
+        this.size = size;
+        Arrays.fill(dataFormat, 0, size, 0);
+        int words = (size + 63) >>> 6;
+        for (long[] bits : validity) {
+            Arrays.fill(bits, 0, words, 0L);
+        }
+    }
+
+    /**
+     * Gets the data format column. Rows which could not be parsed have data
+     * format 0.
+     *
+     * @return the data format of each row
+     */
+    public int[] getDataFormat() {
+        return dataFormat;
+    }
+
+    /**
+     * Gets the column of a decimal field
+     *
+     * @param field the field, must not be integral
+     * @return the values of the field for each row
+     * @throws IllegalArgumentException if the field is integral
+     */
+    public double[] getDoubleColumn(MeasurementField field) {
+        if (field.isIntegral()) {
+            throw new IllegalArgumentException(field + " is not a decimal field");
+        }
+        return doubleColumns[field.ordinal()];
+    }
+
+    /**
+     * Gets the column of an integral field
+     *
+     * @param field the field, must be integral and not long
+     * @return the values of the field for each row
+     * @throws IllegalArgumentException if the field is not integral or is
+     * long
+     */
+    public int[] getIntColumn(MeasurementField field) {
+        if (!field.isIntegral() || field.isLong()) {
+            throw new IllegalArgumentException(field + " is not an int field");
+        }
+        return intColumns[field.ordinal()];
+    }
+
+    /**
+     * Gets the column of a long field
+     *
+     * @param field the field, must be long
+     * @return the values of the field for each row
+     * @throws IllegalArgumentException if the field is not long
+     */
+    public long[] getLongColumn(MeasurementField field) {
+        if (!field.isLong()) {
+            throw new IllegalArgumentException(field + " is not a long field");
+        }
+        return longColumns[field.ordinal()];
+    }
+
+    /**
+     * Gets the validity bitset of a field. Row {@code i} has a value if bit
+     * {@code i % 64} of word {@code i / 64} is set.
+     *
+     * @param field the field
+     * @return the validity bits of the field
+     */
+    public long[] getValidity(MeasurementField field) {
+        return validity[field.ordinal()];
+    }
+
+    /**
+     * Checks whether a row has a value for a field
+     *
+     * @param field the field
+     * @param row the row
+     * @return true if the row has a value for the field
+     */
+    public boolean isValid(MeasurementField field, int row) {
+        return (validity[field.ordinal()][row >>> 6] & (1L << row)) != 0;
+    }
+
+    /**
+     * Stores a measurement into a row. The row is expected to be cleared by
+     * {@link #reset(int)}, validity bits of fields the measurement does not
+     * have are not cleared.
+     *
+     * @param row the row, must be less than {@link #size()}
+     * @param m the measurement to store
+     */
+    public void set(int row, PrimitiveRuuviMeasurement m) {
+        dataFormat[row] = m.getDataFormat();
+        int presence = m.getPresenceMask();
+        if (presence == 0) {
+            return;
+        }
+        if ((presence & MeasurementField.TEMPERATURE.mask()) != 0) {
+            doubleColumns[MeasurementField.TEMPERATURE.ordinal()][row] = m.getTemperature();
+            markValid(MeasurementField.TEMPERATURE, row);
+        }
+        if ((presence & MeasurementField.HUMIDITY.mask()) != 0) {
+            doubleColumns[MeasurementField.HUMIDITY.ordinal()][row] = m.getHumidity();
+            markValid(MeasurementField.HUMIDITY, row);
+        }
+        if ((presence & MeasurementField.PRESSURE.mask()) != 0) {
+            doubleColumns[MeasurementField.PRESSURE.ordinal()][row] = m.getPressure();
+            markValid(MeasurementField.PRESSURE, row);
+        }
+        if ((presence & MeasurementField.ACCELERATION_X.mask()) != 0) {
+            doubleColumns[MeasurementField.ACCELERATION_X.ordinal()][row] = m.getAccelerationX();
+            markValid(MeasurementField.ACCELERATION_X, row);
+        }
+        if ((presence & MeasurementField.ACCELERATION_Y.mask()) != 0) {
+            doubleColumns[MeasurementField.ACCELERATION_Y.ordinal()][row] = m.getAccelerationY();
+            markValid(MeasurementField.ACCELERATION_Y, row);
+        }
+        if ((presence & MeasurementField.ACCELERATION_Z.mask()) != 0) {
+            doubleColumns[MeasurementField.ACCELERATION_Z.ordinal()][row] = m.getAccelerationZ();
+            markValid(MeasurementField.ACCELERATION_Z, row);
+        }
+        if ((presence & MeasurementField.BATTERY_VOLTAGE.mask()) != 0) {
+            doubleColumns[MeasurementField.BATTERY_VOLTAGE.ordinal()][row] = m.getBatteryVoltage();
+            markValid(MeasurementField.BATTERY_VOLTAGE, row);
+        }
+        if ((presence & MeasurementField.TX_POWER.mask()) != 0) {
+            intColumns[MeasurementField.TX_POWER.ordinal()][row] = m.getTxPower();
+            markValid(MeasurementField.TX_POWER, row);
+        }
+        if ((presence & MeasurementField.MOVEMENT_COUNTER.mask()) != 0) {
+            intColumns[MeasurementField.MOVEMENT_COUNTER.ordinal()][row] = m.getMovementCounter();
+            markValid(MeasurementField.MOVEMENT_COUNTER, row);
+        }
+        if ((presence & MeasurementField.MEASUREMENT_SEQUENCE_NUMBER.mask()) != 0) {
+            intColumns[MeasurementField.MEASUREMENT_SEQUENCE_NUMBER.ordinal()][row] = m.getMeasurementSequenceNumber();
+            markValid(MeasurementField.MEASUREMENT_SEQUENCE_NUMBER, row);
+        }
+        if ((presence & MeasurementField.PM25.mask()) != 0) {
+            doubleColumns[MeasurementField.PM25.ordinal()][row] = m.getPm25();
+            markValid(MeasurementField.PM25, row);
+        }
+        if ((presence & MeasurementField.CO2.mask()) != 0) {
+            intColumns[MeasurementField.CO2.ordinal()][row] = m.getCo2();
+            markValid(MeasurementField.CO2, row);
+        }
+        if ((presence & MeasurementField.VOC_INDEX.mask()) != 0) {
+            intColumns[MeasurementField.VOC_INDEX.ordinal()][row] = m.getVocIndex();
+            markValid(MeasurementField.VOC_INDEX, row);
+        }
+        if ((presence & MeasurementField.NOX_INDEX.mask()) != 0) {
+            intColumns[MeasurementField.NOX_INDEX.ordinal()][row] = m.getNoxIndex();
+            markValid(MeasurementField.NOX_INDEX, row);
+        }
+        if ((presence & MeasurementField.LUMINOSITY.mask()) != 0) {
+            doubleColumns[MeasurementField.LUMINOSITY.ordinal()][row] = m.getLuminosity();
+            markValid(MeasurementField.LUMINOSITY, row);
+        }
+        if ((presence & MeasurementField.PM1.mask()) != 0) {
+            doubleColumns[MeasurementField.PM1.ordinal()][row] = m.getPm1();
+            markValid(MeasurementField.PM1, row);
+        }
+        if ((presence & MeasurementField.PM4.mask()) != 0) {
+            doubleColumns[MeasurementField.PM4.ordinal()][row] = m.getPm4();
+            markValid(MeasurementField.PM4, row);
+        }
+        if ((presence & MeasurementField.PM10.mask()) != 0) {
+            doubleColumns[MeasurementField.PM10.ordinal()][row] = m.getPm10();
+            markValid(MeasurementField.PM10, row);
+        }
+        if ((presence & MeasurementField.CALIBRATION_IN_PROGRESS.mask()) != 0) {
+            intColumns[MeasurementField.CALIBRATION_IN_PROGRESS.ordinal()][row] = m.isCalibrationInProgress() ? 1 : 0;
+            markValid(MeasurementField.CALIBRATION_IN_PROGRESS, row);
+        }
+        if ((presence & MeasurementField.MAC.mask()) != 0) {
+            longColumns[MeasurementField.MAC.ordinal()][row] = m.getMac();
+            markValid(MeasurementField.MAC, row);
+        }
+    }
+
+    private void markValid(MeasurementField field, int row) {
+        validity[field.ordinal()][row >>> 6] |= 1L << row;
+    }
+}
@@ -0,0 +1,91 @@
+package fi.tkgwf.ruuvi.common.bean;
+
+import java.util.Set;
+
+/**
+ * The optional measurement fields a RuuviTag can broadcast. Each field maps to
+ * a single bit, which allows sets of fields to be represented as an int mask.
+ */
+public enum MeasurementField {
+
+    TEMPERATURE(false),
+    HUMIDITY(false),
+    PRESSURE(false),
+    ACCELERATION_X(false),
+    ACCELERATION_Y(false),
+    ACCELERATION_Z(false),
+    BATTERY_VOLTAGE(false),
+    TX_POWER(true),
+    MOVEMENT_COUNTER(true),
+    MEASUREMENT_SEQUENCE_NUMBER(true),
+    PM25(false),
+    CO2(true),
+    VOC_INDEX(true),
+    NOX_INDEX(true),
+    LUMINOSITY(false),
+    PM1(false),
+    PM4(false),
+    PM10(false),
+    CALIBRATION_IN_PROGRESS(true),
+    MAC(true, true);
+
+    /**
+     * Mask containing every field
+     */
+    public static final int ALL = (1 << values().length) - 1;
+
+    private final boolean integral;
+    private final boolean wide;
+
+    private MeasurementField(boolean integral) {
+        this(integral, false);
+    }
+
+    private MeasurementField(boolean integral, boolean wide) {
+        this.integral = integral;
+        this.wide = wide;
+    }
+
+    /**
+     * Gets the bit representing this field in a field mask
+     *
+     * @return the bit of this field
+     */
+    public int mask() {
+        return 1 << ordinal();
+    }
+
+    /**
+     * Checks whether this field holds an integer rather than a decimal number.
+     * Boolean fields are considered integral, with 1 meaning true.
+     *
+     * @return true if the values of this field are integers
+     */
+    public boolean isIntegral() {
+        return integral;
+    }
+
+    /**
+     * Checks whether this integral field needs 64 bits, such as the MAC
+     * address, and is stored as a long rather than an int
+     *
+     * @return true if the values of this field are longs
+     */
+    public boolean isLong() {
+        return wide;
+    }
+
+    /**
+     * Converts a set of fields into a field mask
+     *
+     * @param fields the fields to include
+     * @return a mask with the bits of the given fields set
+     */
+    public static int mask(Set<MeasurementField> fields) {
+        int mask = 0;
+        for (MeasurementField field : fields) {
+            mask |= field.mask();
+        }
+        return mask;
+    }
+}
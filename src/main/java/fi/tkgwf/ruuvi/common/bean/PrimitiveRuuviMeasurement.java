@@ -0,0 +1,540 @@
+package fi.tkgwf.ruuvi.common.bean;
+
+/**
+ * A mutable, primitive-backed counterpart of {@link RuuviMeasurement} meant to
+ * be reused across parse calls, so that decoding a packet does not allocate.
+ * <p>
+ * Fields that are not available (not part of the data format, or broadcast as
+ * the "not available" value) are tracked in a presence mask of
+ * {@link MeasurementField} bits. Getters of absent double fields return
+ * {@link Double#NaN}, getters of absent int and boolean fields return
+ * {@code 0} and {@code false}; use {@link #has(MeasurementField)} to tell them
+ * apart from real values.
+ */
+public class PrimitiveRuuviMeasurement {
+
+    private int presence;
+    private int dataFormat;
+    private double temperature;
+    private double humidity;
+    private double pressure;
+    private double accelerationX;
+    private double accelerationY;
+    private double accelerationZ;
+    private double batteryVoltage;
+    private int txPower;
+    private int movementCounter;
+    private int measurementSequenceNumber;
+    private double pm25;
+    private int co2;
+    private int vocIndex;
+    private int noxIndex;
+    private double luminosity;
+    private double pm1;
+    private double pm4;
+    private double pm10;
+    private boolean calibrationInProgress;
+    private long mac;
+
+    /**
+     * Marks every field as not available, making this instance ready to be
+     * filled again.
+     *
+     * @param dataFormat Ruuvi data format of the measurement to be filled
+     */
+    public void reset(int dataFormat) {
+        this.presence = 0;
+        this.dataFormat = dataFormat;
+    }
+
+    /**
+     * Checks whether a field is available
+     *
+     * @param field field to check
+     * @return true if the field has a value
+     */
+    public boolean has(MeasurementField field) {
+        return (presence & field.mask()) != 0;
+    }
+
+    /**
+     * Gets the mask of available fields, see {@link MeasurementField#mask()}
+     *
+     * @return mask of available fields
+     */
+    public int getPresenceMask() {
+        return presence;
+    }
+
+    /**
+     * Gets Ruuvi Data Format
+     * <p>
+     * See: https://github.com/ruuvi/ruuvi-sensor-protocols
+     *
+     * @return Ruuvi data format
+     */
+    public int getDataFormat() {
+        return dataFormat;
+    }
+
+    /**
+     * Get temperature, in Celcius.
+     *
+     * @return measurement or NaN if not available
+     */
+    public double getTemperature() {
+        return (presence & MeasurementField.TEMPERATURE.mask()) != 0 ? temperature : Double.NaN;
+    }
+
+    public void setTemperature(double temperature) {
+        this.temperature = temperature;
+        this.presence |= MeasurementField.TEMPERATURE.mask();
+    }
+
+    /**
+     * Get relative humidity, in percentage.
+     *
+     * @return measurement or NaN if not available
+     */
+    public double getHumidity() {
+        return (presence & MeasurementField.HUMIDITY.mask()) != 0 ? humidity : Double.NaN;
+    }
+
+    public void setHumidity(double humidity) {
+        this.humidity = humidity;
+        this.presence |= MeasurementField.HUMIDITY.mask();
+    }
+
+    /**
+     * Get pressure, in Pascal.
+     *
+     * @return measurement or NaN if not available
+     */
+    public double getPressure() {
+        return (presence & MeasurementField.PRESSURE.mask()) != 0 ? pressure : Double.NaN;
+    }
+
+    public void setPressure(double pressure) {
+        this.pressure = pressure;
+        this.presence |= MeasurementField.PRESSURE.mask();
+    }
+
+    /**
+     * Get acceleration on X axis, in g.
+     *
+     * @return measurement or NaN if not available
+     */
+    public double getAccelerationX() {
+        return (presence & MeasurementField.ACCELERATION_X.mask()) != 0 ? accelerationX : Double.NaN;
+    }
+
+    public void setAccelerationX(double accelerationX) {
+        this.accelerationX = accelerationX;
+        this.presence |= MeasurementField.ACCELERATION_X.mask();
+    }
+
+    /**
+     * Get acceleration on Y axis, in g.
+     *
+     * @return measurement or NaN if not available
+     */
+    public double getAccelerationY() {
+        return (presence & MeasurementField.ACCELERATION_Y.mask()) != 0 ? accelerationY : Double.NaN;
+    }
+
+    public void setAccelerationY(double accelerationY) {
+        this.accelerationY = accelerationY;
+        this.presence |= MeasurementField.ACCELERATION_Y.mask();
+    }
+
+    /**
+     * Get acceleration on Z axis, in g.
+     *
+     * @return measurement or NaN if not available
+     */
+    public double getAccelerationZ() {
+        return (presence & MeasurementField.ACCELERATION_Z.mask()) != 0 ? accelerationZ : Double.NaN;
+    }
+
+    public void setAccelerationZ(double accelerationZ) {
+        this.accelerationZ = accelerationZ;
+        this.presence |= MeasurementField.ACCELERATION_Z.mask();
+    }
+
+    /**
+     * Get battery voltage, in Volts.
+     *
+     * @return measurement or NaN if not available
+     */
+    public double getBatteryVoltage() {
+        return (presence & MeasurementField.BATTERY_VOLTAGE.mask()) != 0 ? batteryVoltage : Double.NaN;
+    }
+
+    public void setBatteryVoltage(double batteryVoltage) {
+        this.batteryVoltage = batteryVoltage;
+        this.presence |= MeasurementField.BATTERY_VOLTAGE.mask();
+    }
+
+    /**
+     * Get Tx power, in dBm.
+     *
+     * @return measurement or 0 if not available
+     */
+    public int getTxPower() {
+        return (presence & MeasurementField.TX_POWER.mask()) != 0 ? txPower : 0;
+    }
+
+    public void setTxPower(int txPower) {
+        this.txPower = txPower;
+        this.presence |= MeasurementField.TX_POWER.mask();
+    }
+
+    /**
+     * Get movement counter value.
+     *
+     * @return measurement or 0 if not available
+     */
+    public int getMovementCounter() {
+        return (presence & MeasurementField.MOVEMENT_COUNTER.mask()) != 0 ? movementCounter : 0;
+    }
+
+    public void setMovementCounter(int movementCounter) {
+        this.movementCounter = movementCounter;
+        this.presence |= MeasurementField.MOVEMENT_COUNTER.mask();
+    }
+
+    /**
+     * Get measurement sequence number.
+     *
+     * @return measurement or 0 if not available
+     */
+    public int getMeasurementSequenceNumber() {
+        return (presence & MeasurementField.MEASUREMENT_SEQUENCE_NUMBER.mask()) != 0 ? measurementSequenceNumber : 0;
+    }
+
+    public void setMeasurementSequenceNumber(int measurementSequenceNumber) {
+        this.measurementSequenceNumber = measurementSequenceNumber;
+        this.presence |= MeasurementField.MEASUREMENT_SEQUENCE_NUMBER.mask();
+    }
+
+    /**
+     * Get PM 2.5, in micrograms per cubic meter.
+     *
+     * @return measurement or NaN if not available
+     */
+    public double getPm25() {
+        return (presence & MeasurementField.PM25.mask()) != 0 ? pm25 : Double.NaN;
+    }
+
+    public void setPm25(double pm25) {
+        this.pm25 = pm25;
+        this.presence |= MeasurementField.PM25.mask();
+    }
+
+    /**
+     * Get CO2 concentration, in PPM.
+     *
+     * @return measurement or 0 if not available
+     */
+    public int getCo2() {
+        return (presence & MeasurementField.CO2.mask()) != 0 ? co2 : 0;
+    }
+
+    public void setCo2(int co2) {
+        this.co2 = co2;
+        this.presence |= MeasurementField.CO2.mask();
+    }
+
+    /**
+     * Get VOC index, unitless.
+     *
+     * @return measurement or 0 if not available
+     */
+    public int getVocIndex() {
+        return (presence & MeasurementField.VOC_INDEX.mask()) != 0 ? vocIndex : 0;
+    }
+
+    public void setVocIndex(int vocIndex) {
+        this.vocIndex = vocIndex;
+        this.presence |= MeasurementField.VOC_INDEX.mask();
+    }
+
+    /**
+     * Get NOx index, unitless.
+     *
+     * @return measurement or 0 if not available
+     */
+    public int getNoxIndex() {
+        return (presence & MeasurementField.NOX_INDEX.mask()) != 0 ? noxIndex : 0;
+    }
+
+    public void setNoxIndex(int noxIndex) {
+        this.noxIndex = noxIndex;
+        this.presence |= MeasurementField.NOX_INDEX.mask();
+    }
+
+    /**
+     * Get luminosity, in lux.
+     *
+     * @return measurement or NaN if not available
+     */
+    public double getLuminosity() {
+        return (presence & MeasurementField.LUMINOSITY.mask()) != 0 ? luminosity : Double.NaN;
+    }
+
+    public void setLuminosity(double luminosity) {
+        this.luminosity = luminosity;
+        this.presence |= MeasurementField.LUMINOSITY.mask();
+    }
+
+    /**
+     * Get PM 1.0, in micrograms per cubic meter.
+     *
+     * @return measurement or NaN if not available
+     */
+    public double getPm1() {
+        return (presence & MeasurementField.PM1.mask()) != 0 ? pm1 : Double.NaN;
+    }
+
+    public void setPm1(double pm1) {
+        this.pm1 = pm1;
+        this.presence |= MeasurementField.PM1.mask();
+    }
+
+    /**
+     * Get PM 4.0, in micrograms per cubic meter.
+     *
+     * @return measurement or NaN if not available
+     */
+    public double getPm4() {
+        return (presence & MeasurementField.PM4.mask()) != 0 ? pm4 : Double.NaN;
+    }
+
+    public void setPm4(double pm4) {
+        this.pm4 = pm4;
+        this.presence |= MeasurementField.PM4.mask();
+    }
+
+    /**
+     * Get PM 10.0, in micrograms per cubic meter.
+     *
+     * @return measurement or NaN if not available
+     */
+    public double getPm10() {
+        return (presence & MeasurementField.PM10.mask()) != 0 ? pm10 : Double.NaN;
+    }
+
+    public void setPm10(double pm10) {
+        this.pm10 = pm10;
+        this.presence |= MeasurementField.PM10.mask();
+    }
+
+    /**
+     * Get sensor calibration in progress flag.
+     *
+     * @return true if calibration is in progress, false if complete or not available
+     */
+    public boolean isCalibrationInProgress() {
+        return (presence & MeasurementField.CALIBRATION_IN_PROGRESS.mask()) != 0 && calibrationInProgress;
+    }
+
+    public void setCalibrationInProgress(boolean calibrationInProgress) {
+        this.calibrationInProgress = calibrationInProgress;
+        this.presence |= MeasurementField.CALIBRATION_IN_PROGRESS.mask();
+    }
+
+    /**
+     * Get the MAC address broadcast in the data, with the first byte of the
+     * usual "AA:BB:CC:DD:EE:FF" notation as the most significant byte of the
+     * lowest 48 bits. See
+     * {@link fi.tkgwf.ruuvi.common.utils.ByteUtils#formatMac(long)}.
+     *
+     * @return MAC address or 0 if not available
+     */
+    public long getMac() {
+        return (presence & MeasurementField.MAC.mask()) != 0 ? mac : 0;
+    }
+
+    public void setMac(long mac) {
+        this.mac = mac;
+        this.presence |= MeasurementField.MAC.mask();
+    }
+
+    /**
+     * Creates a boxed {@link RuuviMeasurement} with the available fields of
+     * this measurement
+     *
+     * @return a new {@link RuuviMeasurement}
+     */
+    public RuuviMeasurement toRuuviMeasurement() {
+        RuuviMeasurement m = new RuuviMeasurement();
+        m.setDataFormat(dataFormat);
+        if ((presence & MeasurementField.TEMPERATURE.mask()) != 0) {
+            m.setTemperature(temperature);
+        }
+        if ((presence & MeasurementField.HUMIDITY.mask()) != 0) {
+            m.setHumidity(humidity);
+        }
+        if ((presence & MeasurementField.PRESSURE.mask()) != 0) {
+            m.setPressure(pressure);
+        }
+        if ((presence & MeasurementField.ACCELERATION_X.mask()) != 0) {
+            m.setAccelerationX(accelerationX);
+        }
+        if ((presence & MeasurementField.ACCELERATION_Y.mask()) != 0) {
+            m.setAccelerationY(accelerationY);
+        }
+        if ((presence & MeasurementField.ACCELERATION_Z.mask()) != 0) {
+            m.setAccelerationZ(accelerationZ);
+        }
+        if ((presence & MeasurementField.BATTERY_VOLTAGE.mask()) != 0) {
+            m.setBatteryVoltage(batteryVoltage);
+        }
+        if ((presence & MeasurementField.TX_POWER.mask()) != 0) {
+            m.setTxPower(txPower);
+        }
+        if ((presence & MeasurementField.MOVEMENT_COUNTER.mask()) != 0) {
+            m.setMovementCounter(movementCounter);
+        }
+        if ((presence & MeasurementField.MEASUREMENT_SEQUENCE_NUMBER.mask()) != 0) {
+            m.setMeasurementSequenceNumber(measurementSequenceNumber);
+        }
+        if ((presence & MeasurementField.PM25.mask()) != 0) {
+            m.setPm25(pm25);
+        }
+        if ((presence & MeasurementField.CO2.mask()) != 0) {
+            m.setCo2(co2);
+        }
+        if ((presence & MeasurementField.VOC_INDEX.mask()) != 0) {
+            m.setVocIndex(vocIndex);
+        }
+        if ((presence & MeasurementField.NOX_INDEX.mask()) != 0) {
+            m.setNoxIndex(noxIndex);
+        }
+        if ((presence & MeasurementField.LUMINOSITY.mask()) != 0) {
+            m.setLuminosity(luminosity);
+        }
+        if ((presence & MeasurementField.PM1.mask()) != 0) {
+            m.setPm1(pm1);
+        }
+        if ((presence & MeasurementField.PM4.mask()) != 0) {
+            m.setPm4(pm4);
+        }
+        if ((presence & MeasurementField.PM10.mask()) != 0) {
+            m.setPm10(pm10);
+        }
+        if ((presence & MeasurementField.CALIBRATION_IN_PROGRESS.mask()) != 0) {
+            m.setCalibrationInProgress(calibrationInProgress);
+        }
+        if ((presence & MeasurementField.MAC.mask()) != 0) {
+            m.setMac(mac);
+        }
+        return m;
+    }
+
+    /**
+     * Replaces the contents of this measurement with the non-null fields of a
+     * boxed {@link RuuviMeasurement}
+     *
+     * @param m the measurement to copy
+     */
+    public void copyFrom(RuuviMeasurement m) {
+        reset(m.getDataFormat() == null ? 0 : m.getDataFormat());
+        if (m.getTemperature() != null) {
+            setTemperature(m.getTemperature());
+        }
+        if (m.getHumidity() != null) {
+            setHumidity(m.getHumidity());
+        }
+        if (m.getPressure() != null) {
+            setPressure(m.getPressure());
+        }
+        if (m.getAccelerationX() != null) {
+            setAccelerationX(m.getAccelerationX());
+        }
+        if (m.getAccelerationY() != null) {
+            setAccelerationY(m.getAccelerationY());
+        }
+        if (m.getAccelerationZ() != null) {
+            setAccelerationZ(m.getAccelerationZ());
+        }
+        if (m.getBatteryVoltage() != null) {
+            setBatteryVoltage(m.getBatteryVoltage());
+        }
+        if (m.getTxPower() != null) {
+            setTxPower(m.getTxPower());
+        }
+        if (m.getMovementCounter() != null) {
+            setMovementCounter(m.getMovementCounter());
+        }
+        if (m.getMeasurementSequenceNumber() != null) {
+            setMeasurementSequenceNumber(m.getMeasurementSequenceNumber());
+        }
+        if (m.getPm25() != null) {
+            setPm25(m.getPm25());
+        }
+        if (m.getCo2() != null) {
+            setCo2(m.getCo2());
+        }
+        if (m.getVocIndex() != null) {
+            setVocIndex(m.getVocIndex());
+        }
+        if (m.getNoxIndex() != null) {
+            setNoxIndex(m.getNoxIndex());
+        }
+        if (m.getLuminosity() != null) {
+            setLuminosity(m.getLuminosity());
+        }
+        if (m.getPm1() != null) {
+            setPm1(m.getPm1());
+        }
+        if (m.getPm4() != null) {
+            setPm4(m.getPm4());
+        }
+        if (m.getPm10() != null) {
+            setPm10(m.getPm10());
+        }
+        if (m.isCalibrationInProgress() != null) {
+            setCalibrationInProgress(m.isCalibrationInProgress());
+        }
+        if (m.getMac() != null) {
+            setMac(m.getMac());
+        }
+    }
+
+    /**
+     * Replaces the contents of this measurement with the contents of another
+     * measurement, without allocating
+     *
+     * @param m the measurement to copy
+     */
+    public void copyFrom(PrimitiveRuuviMeasurement m) {
+        presence = m.presence;
+        dataFormat = m.dataFormat;
+        temperature = m.temperature;
+        humidity = m.humidity;
+        pressure = m.pressure;
+        accelerationX = m.accelerationX;
+        accelerationY = m.accelerationY;
+        accelerationZ = m.accelerationZ;
+        batteryVoltage = m.batteryVoltage;
+        txPower = m.txPower;
+        movementCounter = m.movementCounter;
+        measurementSequenceNumber = m.measurementSequenceNumber;
+        pm25 = m.pm25;
+        co2 = m.co2;
+        vocIndex = m.vocIndex;
+        noxIndex = m.noxIndex;
+        luminosity = m.luminosity;
+        pm1 = m.pm1;
+        pm4 = m.pm4;
+        pm10 = m.pm10;
+        calibrationInProgress = m.calibrationInProgress;
+        mac = m.mac;
+    }
+
+    @Override
+    public String toString() {
+        return toRuuviMeasurement().toString();
+    }
+}
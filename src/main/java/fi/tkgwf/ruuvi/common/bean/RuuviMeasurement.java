@@ -89,6 +89,10 @@ public class RuuviMeasurement {
      * Calibration in progress flag (Format 6+, bit 0 of flags byte)
      */
     private Boolean calibrationInProgress;
+    /**
+     * MAC address broadcast in the data (Format 5 and E1)
+     */
+    private Long mac;
 
     /**
      * Gets Ruuvi Data Format
@@ -382,6 +386,22 @@ public class RuuviMeasurement {
         this.calibrationInProgress = calibrationInProgress;
     }
 
+    /**
+     * Get the MAC address broadcast in the data, with the first byte of the
+     * usual "AA:BB:CC:DD:EE:FF" notation as the most significant byte of the
+     * lowest 48 bits. See
+     * {@link fi.tkgwf.ruuvi.common.utils.ByteUtils#formatMac(long)}.
+     *
+     * @return MAC address or null if not available
+     */
+    public Long getMac() {
+        return mac;
+    }
+
+    public void setMac(Long mac) {
+        this.mac = mac;
+    }
+
     @Override
     public String toString() {
         return new StringBuffer("RuuviMeasurement(")
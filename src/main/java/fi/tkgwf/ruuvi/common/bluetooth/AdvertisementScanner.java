@@ -0,0 +1,124 @@
+package fi.tkgwf.ruuvi.common.bluetooth;
+
+import fi.tkgwf.ruuvi.common.bean.PrimitiveRuuviMeasurement;
+import fi.tkgwf.ruuvi.common.parser.DataFormatParser;
+import fi.tkgwf.ruuvi.common.parser.ParseStatus;
+import fi.tkgwf.ruuvi.common.parser.impl.AnyDataFormatParser;
+
+/**
+ * Finds the Ruuvi payload in a complete BLE advertisement, which consists of
+ * AD structures of a length byte, a type byte and data. The payload is either
+ * manufacturer specific data starting with the Ruuvi company identifier
+ * (0x99 0x04) or service data starting with the Eddystone UUID (0xAA 0xFE),
+ * which are exactly what the parsers expect.
+ * <p>
+ * The advertisement is scanned in place, the payload is located by its offset
+ * and length in the same array. Instances hold the location of the last
+ * payload found and are not thread safe, use one per thread.
+ */
+public class AdvertisementScanner {
+
+    /**
+     * AD type of 16-bit UUID service data
+     */
+    public static final int AD_TYPE_SERVICE_DATA = 0x16;
+    /**
+     * AD type of manufacturer specific data
+     */
+    public static final int AD_TYPE_MANUFACTURER_DATA = 0xFF;
+
+    private final DataFormatParser parser;
+    private int payloadOffset;
+    private int payloadLength;
+
+    /**
+     * Creates a scanner parsing every supported data format
+     */
+    public AdvertisementScanner() {
+        this(new AnyDataFormatParser());
+    }
+
+    /**
+     * Creates a scanner parsing payloads with the given parser
+     *
+     * @param parser the parser to parse the payloads with
+     */
+    public AdvertisementScanner(DataFormatParser parser) {
+        this.parser = parser;
+    }
+
+    /**
+     * Finds the Ruuvi payload in an advertisement. The location of the payload
+     * is available from {@link #getPayloadOffset()} and
+     * {@link #getPayloadLength()} afterwards. A payload in an AD structure
+     * which is cut short by the end of the advertisement is limited to the
+     * bytes available.
+     *
+     * @param data the array containing the advertisement
+     * @param offset index of the first byte of the advertisement
+     * @param length number of bytes in the advertisement
+     * @return true if a Ruuvi payload was found
+     */
+    public boolean scan(byte[] data, int offset, int length) {
+        int end = offset + length;
+        int i = offset;
+        while (i < end) {
+            int structureLength = data[i] & 0xFF;
+            if (structureLength == 0) {
+                break; // the rest of the advertisement is padding
+            }
+            int dataOffset = i + 2;
+            int dataLength = Math.min(structureLength - 1, end - dataOffset);
+            if (dataLength >= 2) {
+                int type = data[i + 1] & 0xFF;
+                int b0 = data[dataOffset] & 0xFF;
+                int b1 = data[dataOffset + 1] & 0xFF;
+                if (type == AD_TYPE_MANUFACTURER_DATA && b0 == 0x99 && b1 == 0x04
+                        || type == AD_TYPE_SERVICE_DATA && b0 == 0xAA && b1 == 0xFE) {
+                    payloadOffset = dataOffset;
+                    payloadLength = dataLength;
+                    return true;
+                }
+            }
+            i += 1 + structureLength;
+        }
+        return false;
+    }
+
+    /**
+     * Finds and parses the Ruuvi payload in an advertisement
+     *
+     * @param data the array containing the advertisement
+     * @param offset index of the first byte of the advertisement
+     * @param length number of bytes in the advertisement
+     * @param measurement the measurement to fill, left untouched if the
+     * advertisement cannot be parsed
+     * @return {@link ParseStatus#OK} if the advertisement was parsed,
+     * {@link ParseStatus#NOT_RUUVI} if it has no Ruuvi payload, otherwise the
+     * reason the payload was rejected
+     */
+    public ParseStatus parse(byte[] data, int offset, int length, PrimitiveRuuviMeasurement measurement) {
+        if (!scan(data, offset, length)) {
+            return ParseStatus.NOT_RUUVI;
+        }
+        return parser.parse(data, payloadOffset, payloadLength, measurement);
+    }
+
+    /**
+     * Gets the index of the first byte of the payload found by the last scan
+     *
+     * @return index of the payload in the scanned array
+     */
+    public int getPayloadOffset() {
+        return payloadOffset;
+    }
+
+    /**
+     * Gets the number of bytes in the payload found by the last scan
+     *
+     * @return length of the payload
+     */
+    public int getPayloadLength() {
+        return payloadLength;
+    }
+}
@@ -0,0 +1,184 @@
+package fi.tkgwf.ruuvi.common.bluetooth;
+
+import fi.tkgwf.ruuvi.common.parser.DataFormatParser;
+import fi.tkgwf.ruuvi.common.parser.impl.AnyDataFormatParser;
+import fi.tkgwf.ruuvi.common.utils.ByteUtils;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads the output of {@code hcidump --raw} and decodes the advertisements in
+ * it. Each packet starts on a line beginning with "&gt;" (received) or "&lt;"
+ * (sent), followed by the bytes of the packet in hex, and may continue on
+ * indented lines:
+ *
+ * <pre>
+ * &gt; 04 3E 2B 02 01 00 01 F3 E2 D1 C0 B0 A0 1F 02 01 06 1B FF 99 04 05 12
+ *   FC 53 94 C3 7C 00 04 FF FC 04 0C AC 36 42 00 CD CB B8 33 4C 88 4F C4
+ * </pre>
+ *
+ * The text is decoded byte by byte from a fixed size input buffer into a
+ * reusable packet buffer, without creating Strings, so memory use is bounded
+ * regardless of the input. Only received HCI event packets are kept, other
+ * packets and any other lines are skipped.
+ * <p>
+ * Instances are not thread safe.
+ */
+public class HcidumpReader {
+
+    /**
+     * Maximum length of an HCI event packet: packet indicator, event code,
+     * parameter length and parameters
+     */
+    public static final int MAX_PACKET_LENGTH = 3 + 255;
+
+    private final InputStream in;
+    private final byte[] input = new byte[8192];
+    private int inputPosition;
+    private int inputLength;
+
+    private final byte[] packet = new byte[MAX_PACKET_LENGTH];
+    private int packetLength;
+    private boolean collecting;
+    private boolean lineStart = true;
+    private boolean skipLine;
+    private int highNibble = -1;
+
+    private final LeAdvertisingReportDecoder reportDecoder;
+    private final LeExtendedAdvertisingReportDecoder extendedReportDecoder;
+
+    /**
+     * Creates a reader parsing every supported data format
+     *
+     * @param in the output of hcidump
+     */
+    public HcidumpReader(InputStream in) {
+        this(in, new AnyDataFormatParser());
+    }
+
+    /**
+     * Creates a reader parsing the advertisements with the given parser
+     *
+     * @param in the output of hcidump
+     * @param parser the parser to parse the Ruuvi payloads with
+     */
+    public HcidumpReader(InputStream in, DataFormatParser parser) {
+        this.in = in;
+        this.reportDecoder = new LeAdvertisingReportDecoder(parser);
+        this.extendedReportDecoder = new LeExtendedAdvertisingReportDecoder(parser,
+                LeExtendedAdvertisingReportDecoder.DEFAULT_MAX_ADVERTISERS);
+    }
+
+    /**
+     * Reads the input until its end and passes the Ruuvi measurements of every
+     * LE Advertising Report and LE Extended Advertising Report event to the
+     * listener
+     *
+     * @param listener the listener to receive the measurements
+     * @return the number of measurements passed to the listener
+     * @throws IOException if reading the input fails
+     */
+    public long read(MeasurementListener listener) throws IOException {
+        long count = 0;
+        while (next()) {
+            count += reportDecoder.decode(packet, 0, packetLength, listener);
+            count += extendedReportDecoder.decode(packet, 0, packetLength, listener);
+        }
+        return count;
+    }
+
+    /**
+     * Reads the next received HCI event packet. The packet is available from
+     * {@link #getPacket()} until the next call. An event packet is returned as
+     * soon as all of its bytes have been read, other packets when the next
+     * packet starts or the input ends.
+     *
+     * @return true if a packet was read, false at the end of the input
+     * @throws IOException if reading the input fails
+     */
+    public boolean next() throws IOException {
+        while (true) {
+            if (inputPosition == inputLength) {
+                inputLength = in.read(input);
+                inputPosition = 0;
+                if (inputLength <= 0) {
+                    inputLength = 0;
+                    return finishPacket();
+                }
+            }
+            int c = input[inputPosition];
+            if (c == '\n' || c == '\r') {
+                inputPosition++;
+                lineStart = true;
+                skipLine = false;
+                highNibble = -1;
+                continue;
+            }
+            if (lineStart) {
+                if (c == '>' || c == '<') {
+                    if (collecting && packetLength > 0) {
+                        return finishPacket(); // the start of this line is read again on the next call
+                    }
+                    collecting = c == '>';
+                    packetLength = 0;
+                    skipLine = !collecting;
+                } else if (c != ' ' && c != '\t') {
+                    collecting = false; // not a packet
+                    skipLine = true;
+                } else if (!collecting) {
+                    skipLine = true; // continuation of a skipped packet
+                }
+                lineStart = false;
+                inputPosition++;
+                continue;
+            }
+            inputPosition++;
+            if (skipLine) {
+                continue;
+            }
+            int digit = ByteUtils.hexValue(c);
+            if (digit < 0) {
+                highNibble = -1;
+                continue;
+            }
+            if (highNibble < 0) {
+                highNibble = digit;
+                continue;
+            }
+            packet[packetLength++] = (byte) (highNibble << 4 | digit);
+            highNibble = -1;
+            if (packet[0] != LeAdvertisingReportDecoder.HCI_EVENT_PACKET) {
+                collecting = false; // not an event
+                skipLine = true;
+            } else if (packetLength >= 3 && packetLength == 3 + (packet[2] & 0xFF)) {
+                skipLine = true;
+                return finishPacket();
+            }
+        }
+    }
+
+    private boolean finishPacket() {
+        boolean finished = collecting && packetLength > 0;
+        collecting = false;
+        return finished;
+    }
+
+    /**
+     * Gets the buffer containing the last packet read, starting with the HCI
+     * packet indicator. The buffer is reused for every packet.
+     *
+     * @return the packet buffer
+     */
+    public byte[] getPacket() {
+        return packet;
+    }
+
+    /**
+     * Gets the number of bytes in the last packet read
+     *
+     * @return length of the packet
+     */
+    public int getPacketLength() {
+        return packetLength;
+    }
+}
@@ -0,0 +1,315 @@
+package fi.tkgwf.ruuvi.common.bluetooth;
+
+import fi.tkgwf.ruuvi.common.bean.PrimitiveRuuviMeasurement;
+import fi.tkgwf.ruuvi.common.parser.DataFormatParser;
+import fi.tkgwf.ruuvi.common.parser.ParseStatus;
+import fi.tkgwf.ruuvi.common.parser.impl.AnyDataFormatParser;
+
+/**
+ * Decodes HCI LE Advertising Report events, as read from a raw HCI socket or
+ * printed by {@code hcidump --raw}. One event may carry several reports, which
+ * are iterated with {@link #next()}:
+ *
+ * <pre>
+ * if (decoder.wrap(data, 0, length)) {
+ *     while (decoder.next()) {
+ *         if (decoder.parse(measurement) == ParseStatus.OK) {
+ *             store(decoder.getAddress(), decoder.getRssi(), measurement);
+ *         }
+ *     }
+ * }
+ * </pre>
+ *
+ * The event is read in place, the advertisement data of each report is
+ * located by its offset and length in the same array. The event may start
+ * with the HCI event packet indicator (0x04) or directly with the event code.
+ * <p>
+ * An event with several reports is decoded in the layout of the core
+ * specification, where each field is an array over all reports: the event
+ * types of every report come first, then the address types, the addresses,
+ * the data lengths, the data and finally the RSSIs. The reports of such an
+ * event are only decoded if the whole event is present. Controllers send a
+ * single report per event in practice, which is the same in every layout.
+ * <p>
+ * Instances hold the state of the current event and are not thread safe, use
+ * one per thread.
+ */
+public class LeAdvertisingReportDecoder {
+
+    /**
+     * HCI packet indicator of event packets
+     */
+    public static final int HCI_EVENT_PACKET = 0x04;
+    /**
+     * Event code of LE Meta events
+     */
+    public static final int EVT_LE_META_EVENT = 0x3E;
+    /**
+     * Subevent code of LE Advertising Report events
+     */
+    public static final int EVT_LE_ADVERTISING_REPORT = 0x02;
+
+    private static final int REPORT_HEADER_LENGTH = 9; // event type, address type, address, data length
+
+    private final AdvertisementScanner scanner;
+    private final PrimitiveRuuviMeasurement scratch = new PrimitiveRuuviMeasurement();
+
+    private byte[] data;
+    private int position;
+    private int end;
+    private int reportCount;
+    private int reportsLeft;
+    private int dataPosition;
+    private int rssiPosition;
+
+    private int eventType;
+    private int addressType;
+    private long address;
+    private int rssi;
+    private int dataOffset;
+    private int dataLength;
+
+    /**
+     * Creates a decoder parsing every supported data format
+     */
+    public LeAdvertisingReportDecoder() {
+        this(new AnyDataFormatParser());
+    }
+
+    /**
+     * Creates a decoder parsing the advertisements with the given parser
+     *
+     * @param parser the parser to parse the Ruuvi payloads with
+     */
+    public LeAdvertisingReportDecoder(DataFormatParser parser) {
+        this.scanner = new AdvertisementScanner(parser);
+    }
+
+    /**
+     * Starts decoding an HCI event. The reports of the event are iterated with
+     * {@link #next()}.
+     *
+     * @param data the array containing the event
+     * @param offset index of the first byte of the event
+     * @param length number of bytes in the event
+     * @return true if the event is an LE Advertising Report event
+     */
+    public boolean wrap(byte[] data, int offset, int length) {
+        this.data = data;
+        this.reportCount = 0;
+        this.reportsLeft = 0;
+        int end = offset + length;
+        int i = offset;
+        if (end - i >= 2 && data[i] == HCI_EVENT_PACKET && (data[i + 1] & 0xFF) == EVT_LE_META_EVENT) {
+            i++; // skip the packet indicator
+        }
+        if (end - i < 4 || (data[i] & 0xFF) != EVT_LE_META_EVENT || data[i + 2] != EVT_LE_ADVERTISING_REPORT) {
+            return false;
+        }
+        this.end = Math.min(end, i + 2 + (data[i + 1] & 0xFF));
+        this.reportCount = data[i + 3] & 0xFF;
+        this.reportsLeft = reportCount;
+        this.position = i + 4;
+        if (reportCount > 1) {
+            locateArrays();
+        }
+        return true;
+    }
+
+    /**
+     * Locates the data and RSSI arrays of an event with several reports, or
+     * marks the event as having no reports if it is truncated
+     */
+    private void locateArrays() {
+        int lengths = position + 8 * reportCount;
+        dataPosition = lengths + reportCount;
+        if (dataPosition > end) {
+            reportsLeft = 0;
+            return;
+        }
+        int total = 0;
+        for (int k = 0; k < reportCount; k++) {
+            total += data[lengths + k] & 0xFF;
+        }
+        rssiPosition = dataPosition + total;
+        if (rssiPosition + reportCount > end) {
+            reportsLeft = 0;
+        }
+    }
+
+    /**
+     * Moves to the next report of the event
+     *
+     * @return true if there is a report, false if every report has been read
+     * or the rest of the event is truncated
+     */
+    public boolean next() {
+        if (reportCount > 1) {
+            return nextInArrays();
+        }
+        if (reportsLeft == 0 || end - position < REPORT_HEADER_LENGTH) {
+            reportsLeft = 0;
+            return false;
+        }
+        int i = position;
+        int length = data[i + 8] & 0xFF;
+        if (end - i < REPORT_HEADER_LENGTH + length + 1) {
+            reportsLeft = 0;
+            return false; // data or RSSI missing
+        }
+        eventType = data[i] & 0xFF;
+        addressType = data[i + 1] & 0xFF;
+        address = readAddress(data, i + 2);
+        dataOffset = i + REPORT_HEADER_LENGTH;
+        dataLength = length;
+        rssi = data[dataOffset + length];
+        position = dataOffset + length + 1;
+        reportsLeft--;
+        return true;
+    }
+
+    private boolean nextInArrays() {
+        if (reportsLeft == 0) {
+            return false;
+        }
+        int n = reportCount;
+        int k = n - reportsLeft;
+        eventType = data[position + k] & 0xFF;
+        addressType = data[position + n + k] & 0xFF;
+        address = readAddress(data, position + 2 * n + 6 * k);
+        dataOffset = dataPosition;
+        dataLength = data[position + 8 * n + k] & 0xFF;
+        rssi = data[rssiPosition + k];
+        dataPosition += dataLength;
+        reportsLeft--;
+        return true;
+    }
+
+    /**
+     * Parses the Ruuvi payload in the advertisement data of the current
+     * report
+     *
+     * @param measurement the measurement to fill, left untouched if the
+     * advertisement cannot be parsed
+     * @return {@link ParseStatus#OK} if the advertisement was parsed, otherwise
+     * the reason it was rejected
+     */
+    public ParseStatus parse(PrimitiveRuuviMeasurement measurement) {
+        return scanner.parse(data, dataOffset, dataLength, measurement);
+    }
+
+    /**
+     * Decodes every report of an HCI event and passes the Ruuvi measurements
+     * to the listener
+     *
+     * @param data the array containing the event
+     * @param offset index of the first byte of the event
+     * @param length number of bytes in the event
+     * @param listener the listener to receive the measurements
+     * @return the number of measurements passed to the listener
+     */
+    public int decode(byte[] data, int offset, int length, MeasurementListener listener) {
+        if (!wrap(data, offset, length)) {
+            return 0;
+        }
+        int count = 0;
+        while (next()) {
+            if (parse(scratch) == ParseStatus.OK) {
+                listener.onMeasurement(address, rssi, scratch);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Reads a 6 byte little-endian Bluetooth device address
+     *
+     * @param data the array containing the address
+     * @param offset index of the least significant byte of the address
+     * @return the address as a long
+     */
+    static long readAddress(byte[] data, int offset) {
+        long address = 0;
+        for (int i = 5; i >= 0; i--) {
+            address = address << 8 | data[offset + i] & 0xFF;
+        }
+        return address;
+    }
+
+    /**
+     * Gets the number of reports in the current event
+     *
+     * @return number of reports, 0 if the event is not an LE Advertising
+     * Report event
+     */
+    public int getReportCount() {
+        return reportCount;
+    }
+
+    /**
+     * Gets the advertising event type of the current report, for example
+     * 0x00 for connectable undirected advertising
+     *
+     * @return the event type
+     */
+    public int getEventType() {
+        return eventType;
+    }
+
+    /**
+     * Gets the address type of the current report, 0x00 for public and 0x01
+     * for random device addresses
+     *
+     * @return the address type
+     */
+    public int getAddressType() {
+        return addressType;
+    }
+
+    /**
+     * Gets the address of the advertiser of the current report
+     *
+     * @return the address, see {@link MeasurementListener} for the byte order
+     */
+    public long getAddress() {
+        return address;
+    }
+
+    /**
+     * Gets the received signal strength of the current report
+     *
+     * @return RSSI in dBm, 127 if not available
+     */
+    public int getRssi() {
+        return rssi;
+    }
+
+    /**
+     * Gets the array containing the current event
+     *
+     * @return the array given to {@link #wrap(byte[], int, int)}
+     */
+    public byte[] getData() {
+        return data;
+    }
+
+    /**
+     * Gets the index of the first byte of the advertisement data of the
+     * current report
+     *
+     * @return index in the array returned by {@link #getData()}
+     */
+    public int getDataOffset() {
+        return dataOffset;
+    }
+
+    /**
+     * Gets the number of bytes of advertisement data in the current report
+     *
+     * @return length of the advertisement data
+     */
+    public int getDataLength() {
+        return dataLength;
+    }
+}
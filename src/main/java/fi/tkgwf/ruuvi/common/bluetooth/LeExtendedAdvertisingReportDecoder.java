@@ -0,0 +1,208 @@
+package fi.tkgwf.ruuvi.common.bluetooth;
+
+import fi.tkgwf.ruuvi.common.bean.PrimitiveRuuviMeasurement;
+import fi.tkgwf.ruuvi.common.parser.DataFormatParser;
+import fi.tkgwf.ruuvi.common.parser.ParseStatus;
+import fi.tkgwf.ruuvi.common.parser.impl.AnyDataFormatParser;
+
+/**
+ * Decodes HCI LE Extended Advertising Report events of Bluetooth 5, which
+ * carry the extended advertisements of Data Format E1. The event may start
+ * with the HCI event packet indicator (0x04) or directly with the event code.
+ * <p>
+ * Advertisement data that does not fit in one event is split into fragments
+ * with the "incomplete, more data to come" data status. The fragments are
+ * collected into a reusable buffer per advertiser, and the advertisement is
+ * parsed when its last fragment arrives. A fixed number of advertisers can be
+ * reassembled at the same time, when all buffers are in use the advertiser
+ * which has been waiting the longest is dropped. Advertisements that are not
+ * fragmented are parsed in place without copying.
+ * <p>
+ * The reports are expected one after another, the way BlueZ lays them out.
+ * Instances hold the fragments and are not thread safe, use one per thread.
+ */
+public class LeExtendedAdvertisingReportDecoder {
+
+    /**
+     * Subevent code of LE Extended Advertising Report events
+     */
+    public static final int EVT_LE_EXTENDED_ADVERTISING_REPORT = 0x0D;
+    /**
+     * Default number of advertisers whose fragments can be collected at the
+     * same time
+     */
+    public static final int DEFAULT_MAX_ADVERTISERS = 8;
+    /**
+     * Maximum length of extended advertising data
+     */
+    public static final int MAX_DATA_LENGTH = 1650;
+
+    private static final int REPORT_HEADER_LENGTH = 24;
+    private static final int DATA_STATUS_COMPLETE = 0;
+    private static final int DATA_STATUS_INCOMPLETE = 1;
+
+    private final AdvertisementScanner scanner;
+    private final PrimitiveRuuviMeasurement scratch = new PrimitiveRuuviMeasurement();
+
+    private final long[] fragmentKeys;
+    private final byte[][] fragmentData;
+    private final int[] fragmentLengths;
+    private final long[] fragmentStarted;
+    private long fragmentCounter;
+
+    /**
+     * Creates a decoder parsing every supported data format
+     */
+    public LeExtendedAdvertisingReportDecoder() {
+        this(new AnyDataFormatParser(), DEFAULT_MAX_ADVERTISERS);
+    }
+
+    /**
+     * Creates a decoder parsing the advertisements with the given parser
+     *
+     * @param parser the parser to parse the Ruuvi payloads with
+     * @param maxAdvertisers number of advertisers whose fragments can be
+     * collected at the same time
+     */
+    public LeExtendedAdvertisingReportDecoder(DataFormatParser parser, int maxAdvertisers) {
+        if (maxAdvertisers < 1) {
+            throw new IllegalArgumentException("maxAdvertisers must be positive: " + maxAdvertisers);
+        }
+        this.scanner = new AdvertisementScanner(parser);
+        this.fragmentKeys = new long[maxAdvertisers];
+        this.fragmentData = new byte[maxAdvertisers][];
+        this.fragmentLengths = new int[maxAdvertisers];
+        this.fragmentStarted = new long[maxAdvertisers];
+        clear();
+    }
+
+    /**
+     * Decodes every report of an HCI event and passes the Ruuvi measurements
+     * of the complete advertisements to the listener
+     *
+     * @param data the array containing the event
+     * @param offset index of the first byte of the event
+     * @param length number of bytes in the event
+     * @param listener the listener to receive the measurements
+     * @return the number of measurements passed to the listener
+     */
+    public int decode(byte[] data, int offset, int length, MeasurementListener listener) {
+        int end = offset + length;
+        int i = offset;
+        if (end - i >= 2 && data[i] == LeAdvertisingReportDecoder.HCI_EVENT_PACKET
+                && (data[i + 1] & 0xFF) == LeAdvertisingReportDecoder.EVT_LE_META_EVENT) {
+            i++; // skip the packet indicator
+        }
+        if (end - i < 4 || (data[i] & 0xFF) != LeAdvertisingReportDecoder.EVT_LE_META_EVENT
+                || data[i + 2] != EVT_LE_EXTENDED_ADVERTISING_REPORT) {
+            return 0;
+        }
+        end = Math.min(end, i + 2 + (data[i + 1] & 0xFF));
+        int reports = data[i + 3] & 0xFF;
+        i += 4;
+        int count = 0;
+        for (int r = 0; r < reports && end - i >= REPORT_HEADER_LENGTH; r++) {
+            int dataLength = data[i + 23] & 0xFF;
+            if (end - i < REPORT_HEADER_LENGTH + dataLength) {
+                break; // truncated
+            }
+            if (decodeReport(data, i, dataLength, listener)) {
+                count++;
+            }
+            i += REPORT_HEADER_LENGTH + dataLength;
+        }
+        return count;
+    }
+
+    /**
+     * Discards every fragment collected so far
+     */
+    public void clear() {
+        for (int i = 0; i < fragmentLengths.length; i++) {
+            fragmentLengths[i] = -1;
+        }
+    }
+
+    private boolean decodeReport(byte[] data, int offset, int dataLength, MeasurementListener listener) {
+        int dataStatus = (data[offset] >> 5) & 0x3;
+        int addressType = data[offset + 2] & 0xFF;
+        long address = LeAdvertisingReportDecoder.readAddress(data, offset + 3);
+        int sid = data[offset + 11] & 0xFF;
+        int rssi = data[offset + 13];
+        int dataOffset = offset + REPORT_HEADER_LENGTH;
+        long key = address | (long) addressType << 48 | (long) sid << 56;
+        int slot = findFragments(key);
+
+        if (dataStatus == DATA_STATUS_COMPLETE) {
+            if (slot < 0) {
+                return parse(data, dataOffset, dataLength, address, rssi, listener);
+            }
+            int received = fragmentLengths[slot];
+            fragmentLengths[slot] = -1; // the advertisement is complete, release the buffer
+            if (received + dataLength > MAX_DATA_LENGTH) {
+                return false;
+            }
+            System.arraycopy(data, dataOffset, fragmentData[slot], received, dataLength);
+            return parse(fragmentData[slot], 0, received + dataLength, address, rssi, listener);
+        }
+        if (dataStatus == DATA_STATUS_INCOMPLETE) {
+            if (slot < 0) {
+                slot = allocateFragments(key);
+            }
+            int received = fragmentLengths[slot];
+            if (received + dataLength > MAX_DATA_LENGTH) {
+                fragmentLengths[slot] = -1; // too long, drop the advertisement
+                return false;
+            }
+            System.arraycopy(data, dataOffset, fragmentData[slot], received, dataLength);
+            fragmentLengths[slot] = received + dataLength;
+            return false;
+        }
+        // truncated, the rest of the data will not be received
+        if (slot >= 0) {
+            fragmentLengths[slot] = -1;
+        }
+        return false;
+    }
+
+    private boolean parse(byte[] data, int offset, int length, long address, int rssi, MeasurementListener listener) {
+        if (scanner.parse(data, offset, length, scratch) != ParseStatus.OK) {
+            return false;
+        }
+        listener.onMeasurement(address, rssi, scratch);
+        return true;
+    }
+
+    private int findFragments(long key) {
+        for (int i = 0; i < fragmentKeys.length; i++) {
+            if (fragmentLengths[i] >= 0 && fragmentKeys[i] == key) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Takes a free fragment buffer into use, or the buffer of the advertiser
+     * which has been waiting the longest if all are in use
+     */
+    private int allocateFragments(long key) {
+        int slot = 0;
+        for (int i = 0; i < fragmentKeys.length; i++) {
+            if (fragmentLengths[i] < 0) {
+                slot = i;
+                break;
+            }
+            if (fragmentStarted[i] < fragmentStarted[slot]) {
+                slot = i;
+            }
+        }
+        if (fragmentData[slot] == null) {
+            fragmentData[slot] = new byte[MAX_DATA_LENGTH];
+        }
+        fragmentKeys[slot] = key;
+        fragmentLengths[slot] = 0;
+        fragmentStarted[slot] = fragmentCounter++;
+        return slot;
+    }
+}
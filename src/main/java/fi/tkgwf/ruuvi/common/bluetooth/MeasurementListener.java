@@ -0,0 +1,22 @@
+package fi.tkgwf.ruuvi.common.bluetooth;
+
+import fi.tkgwf.ruuvi.common.bean.PrimitiveRuuviMeasurement;
+
+/**
+ * Receives the measurements decoded from Bluetooth data
+ */
+public interface MeasurementListener {
+
+    /**
+     * Called for every measurement decoded. The measurement instance is reused
+     * for the next measurement, so it must be copied if it is needed after
+     * this method returns.
+     *
+     * @param mac the address of the RuuviTag, with the first byte of the
+     * usual "AA:BB:CC:DD:EE:FF" notation as the most significant byte of the
+     * lowest 48 bits
+     * @param rssi the received signal strength in dBm
+     * @param measurement the measurement
+     */
+    void onMeasurement(long mac, int rssi, PrimitiveRuuviMeasurement measurement);
+}
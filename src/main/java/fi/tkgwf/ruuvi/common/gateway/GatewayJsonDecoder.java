@@ -0,0 +1,406 @@
+package fi.tkgwf.ruuvi.common.gateway;
+
+import fi.tkgwf.ruuvi.common.bean.PrimitiveRuuviMeasurement;
+import fi.tkgwf.ruuvi.common.bluetooth.AdvertisementScanner;
+import fi.tkgwf.ruuvi.common.bluetooth.LeExtendedAdvertisingReportDecoder;
+import fi.tkgwf.ruuvi.common.parser.DataFormatParser;
+import fi.tkgwf.ruuvi.common.parser.ParseStatus;
+import fi.tkgwf.ruuvi.common.parser.impl.AnyDataFormatParser;
+import fi.tkgwf.ruuvi.common.utils.ByteUtils;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Decodes the JSON documents sent by the Ruuvi Gateway. The documents posted
+ * over HTTP contain a "tags" object mapping the MAC address of each tag to
+ * its advertisement:
+ *
+ * <pre>
+ * {"data": {"timestamp": 1633248443, "gw_mac": "C8:25:2D:8E:9C:2C", "tags": {
+ *     "D2:A3:6E:C8:E0:25": {"rssi": -62, "timestamp": 1633248440, "data": "0201061BFF9904..."}
+ * }}}
+ * </pre>
+ *
+ * MQTT messages contain a single advertisement with the MAC address in the
+ * topic, see {@link #decodeTag(byte[], int, int, long, GatewayMeasurementListener)}.
+ * <p>
+ * The document is decoded in a single pass over the UTF-8 bytes without
+ * building an object tree or creating Strings. The advertisement hex is
+ * decoded into a reusable buffer and parsed from there, advertisements longer
+ * than {@link LeExtendedAdvertisingReportDecoder#MAX_DATA_LENGTH} are skipped.
+ * Values that are not needed are skipped without being decoded.
+ * <p>
+ * Instances hold the decoding state and are not thread safe, use one per
+ * thread.
+ */
+public class GatewayJsonDecoder {
+
+    private static final int MAX_DEPTH = 16;
+    private static final byte[] TAGS = "tags".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] RSSI = "rssi".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] TIMESTAMP = "timestamp".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] TS = "ts".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] DATA = "data".getBytes(StandardCharsets.US_ASCII);
+
+    private final AdvertisementScanner scanner;
+    private final PrimitiveRuuviMeasurement scratch = new PrimitiveRuuviMeasurement();
+    private final byte[] advertisement = new byte[LeExtendedAdvertisingReportDecoder.MAX_DATA_LENGTH];
+
+    private byte[] json;
+    private int end;
+    private long number;
+    private int count;
+
+    /**
+     * Creates a decoder parsing every supported data format
+     */
+    public GatewayJsonDecoder() {
+        this(new AnyDataFormatParser());
+    }
+
+    /**
+     * Creates a decoder parsing the advertisements with the given parser
+     *
+     * @param parser the parser to parse the Ruuvi payloads with
+     */
+    public GatewayJsonDecoder(DataFormatParser parser) {
+        this.scanner = new AdvertisementScanner(parser);
+    }
+
+    /**
+     * Decodes a document containing a "tags" object, as posted by the gateway
+     * over HTTP, and passes the Ruuvi measurements to the listener
+     *
+     * @param json the array containing the document as UTF-8
+     * @param offset index of the first byte of the document
+     * @param length number of bytes in the document
+     * @param listener the listener to receive the measurements
+     * @return the number of measurements passed to the listener, or -1 if the
+     * document is not valid JSON. The measurements before the error are passed
+     * to the listener even then.
+     */
+    public int decode(byte[] json, int offset, int length, GatewayMeasurementListener listener) {
+        start(json, offset, length);
+        int i = walk(offset, 0, listener);
+        return i >= 0 && skipWhitespace(i) == end ? count : -1;
+    }
+
+    /**
+     * Decodes a document containing a single advertisement, as published by
+     * the gateway over MQTT, and passes the Ruuvi measurement to the listener
+     *
+     * @param json the array containing the document as UTF-8
+     * @param offset index of the first byte of the document
+     * @param length number of bytes in the document
+     * @param mac the address of the tag, from the MQTT topic
+     * @param listener the listener to receive the measurement
+     * @return the number of measurements passed to the listener, or -1 if the
+     * document is not valid JSON
+     */
+    public int decodeTag(byte[] json, int offset, int length, long mac, GatewayMeasurementListener listener) {
+        start(json, offset, length);
+        int i = skipWhitespace(offset);
+        if (i >= end || json[i] != '{') {
+            return -1;
+        }
+        i = decodeTag(i, mac, listener);
+        return i >= 0 && skipWhitespace(i) == end ? count : -1;
+    }
+
+    private void start(byte[] json, int offset, int length) {
+        this.json = json;
+        this.end = offset + length;
+        this.count = 0;
+    }
+
+    /**
+     * Looks for "tags" objects in the value starting at i
+     *
+     * @return index after the value, or -1 if the JSON is not valid
+     */
+    private int walk(int i, int depth, GatewayMeasurementListener listener) {
+        i = skipWhitespace(i);
+        if (i >= end || json[i] != '{' || depth == MAX_DEPTH) {
+            return skipValue(i);
+        }
+        i = skipWhitespace(i + 1);
+        if (i < end && json[i] == '}') {
+            return i + 1;
+        }
+        while (true) {
+            int keyStart = i + 1;
+            i = skipString(i);
+            if (i < 0) {
+                return -1;
+            }
+            int keyEnd = i - 1;
+            i = skipColon(i);
+            if (i < 0) {
+                return -1;
+            }
+            if (equals(keyStart, keyEnd, TAGS) && json[i] == '{') {
+                i = decodeTags(i, listener);
+            } else {
+                i = walk(i, depth + 1, listener);
+            }
+            int next = nextMember(i);
+            if (next <= 0) {
+                return next == 0 ? -1 : -next;
+            }
+            i = next;
+        }
+    }
+
+    private int decodeTags(int i, GatewayMeasurementListener listener) {
+        i = skipWhitespace(i + 1);
+        if (i < end && json[i] == '}') {
+            return i + 1;
+        }
+        while (true) {
+            int keyStart = i + 1;
+            i = skipString(i);
+            if (i < 0) {
+                return -1;
+            }
+            long mac = parseMac(keyStart, i - 1);
+            i = skipColon(i);
+            if (i < 0) {
+                return -1;
+            }
+            i = json[i] == '{' ? decodeTag(i, mac, listener) : skipValue(i);
+            int next = nextMember(i);
+            if (next <= 0) {
+                return next == 0 ? -1 : -next;
+            }
+            i = next;
+        }
+    }
+
+    /**
+     * Decodes the object of a single tag starting at i, and passes its
+     * measurement to the listener if it has one
+     */
+    private int decodeTag(int i, long mac, GatewayMeasurementListener listener) {
+        int rssi = 0;
+        boolean hasRssi = false;
+        long timestamp = 0;
+        int dataLength = -1;
+        i = skipWhitespace(i + 1);
+        if (i < end && json[i] == '}') {
+            return i + 1;
+        }
+        while (true) {
+            int keyStart = i + 1;
+            i = skipString(i);
+            if (i < 0) {
+                return -1;
+            }
+            int keyEnd = i - 1;
+            i = skipColon(i);
+            if (i < 0) {
+                return -1;
+            }
+            if (equals(keyStart, keyEnd, RSSI)) {
+                int next = parseNumber(i);
+                hasRssi = next >= 0;
+                rssi = hasRssi ? (int) number : 0;
+                i = hasRssi ? next : skipValue(i);
+            } else if (equals(keyStart, keyEnd, TIMESTAMP) || equals(keyStart, keyEnd, TS)) {
+                int next = parseNumber(i);
+                timestamp = next >= 0 ? number : 0;
+                i = next >= 0 ? next : skipValue(i);
+            } else if (equals(keyStart, keyEnd, DATA) && json[i] == '"') {
+                int dataStart = i + 1;
+                i = skipString(i);
+                int hexLength = i - 1 - dataStart;
+                dataLength = i < 0 || hexLength > 2 * LeExtendedAdvertisingReportDecoder.MAX_DATA_LENGTH ? -1
+                        : ByteUtils.decodeHex(json, dataStart, i - 1, advertisement, 0);
+            } else {
+                i = skipValue(i);
+            }
+            int next = nextMember(i);
+            if (next == 0) {
+                return -1;
+            }
+            if (next < 0) {
+                i = -next;
+                break;
+            }
+            i = next;
+        }
+        if (mac >= 0 && hasRssi && dataLength >= 0
+                && scanner.parse(advertisement, 0, dataLength, scratch) == ParseStatus.OK) {
+            listener.onMeasurement(mac, rssi, timestamp, scratch);
+            count++;
+        }
+        return i;
+    }
+
+    /**
+     * Moves past the separator after an object member
+     *
+     * @return index of the next member name if there is one, the negated index
+     * after the end of the object if not, or 0 if the JSON is not valid
+     */
+    private int nextMember(int i) {
+        if (i < 0) {
+            return 0;
+        }
+        i = skipWhitespace(i);
+        if (i < end && json[i] == ',') {
+            i = skipWhitespace(i + 1);
+            return i < end && json[i] == '"' ? i : 0;
+        }
+        return i < end && json[i] == '}' ? -(i + 1) : 0;
+    }
+
+    private int skipColon(int i) {
+        i = skipWhitespace(i);
+        if (i >= end || json[i] != ':') {
+            return -1;
+        }
+        i = skipWhitespace(i + 1);
+        return i < end ? i : -1;
+    }
+
+    private int skipWhitespace(int i) {
+        while (i < end && (json[i] == ' ' || json[i] == '\n' || json[i] == '\r' || json[i] == '\t')) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Skips the string starting at i
+     *
+     * @return index after the closing quote, or -1 if there is no string
+     */
+    private int skipString(int i) {
+        if (i >= end || json[i] != '"') {
+            return -1;
+        }
+        for (i++; i < end; i++) {
+            if (json[i] == '\\') {
+                i++;
+            } else if (json[i] == '"') {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Skips any value starting at i, nested objects and arrays are skipped by
+     * counting brackets
+     *
+     * @return index after the value, or -1 if the JSON is not valid
+     */
+    private int skipValue(int i) {
+        if (i >= end) {
+            return -1;
+        }
+        if (json[i] == '"') {
+            return skipString(i);
+        }
+        if (json[i] != '{' && json[i] != '[') {
+            int start = i;
+            while (i < end && json[i] != ',' && json[i] != '}' && json[i] != ']' && json[i] != ' '
+                    && json[i] != '\n' && json[i] != '\r' && json[i] != '\t') {
+                i++;
+            }
+            return i > start ? i : -1;
+        }
+        int depth = 0;
+        while (i < end) {
+            byte c = json[i];
+            if (c == '"') {
+                i = skipString(i);
+                if (i < 0) {
+                    return -1;
+                }
+                continue;
+            }
+            if (c == '{' || c == '[') {
+                depth++;
+            } else if (c == '}' || c == ']') {
+                depth--;
+                if (depth == 0) {
+                    return i + 1;
+                }
+            }
+            i++;
+        }
+        return -1;
+    }
+
+    /**
+     * Parses an integer starting at i into {@link #number}, the integer may be
+     * quoted. Other values, such as null or numbers with a fraction or an
+     * exponent, are not parsed so that the caller can skip them.
+     *
+     * @return index after the value, or -1 if the value is not an integer
+     */
+    private int parseNumber(int i) {
+        boolean quoted = json[i] == '"';
+        if (quoted) {
+            i++;
+        }
+        boolean negative = i < end && json[i] == '-';
+        if (negative) {
+            i++;
+        }
+        int start = i;
+        long value = 0;
+        while (i < end && json[i] >= '0' && json[i] <= '9') {
+            value = value * 10 + (json[i] - '0');
+            i++;
+        }
+        if (i == start) {
+            return -1;
+        }
+        if (quoted) {
+            if (i >= end || json[i] != '"') {
+                return -1;
+            }
+            i++;
+        } else if (i < end && json[i] != ',' && json[i] != '}' && json[i] != ']' && json[i] != ' '
+                && json[i] != '\n' && json[i] != '\r' && json[i] != '\t') {
+            return -1;
+        }
+        number = negative ? -value : value;
+        return i;
+    }
+
+    /**
+     * Parses a MAC address of 12 hex digits, optionally separated by colons
+     *
+     * @return the address, or -1 if it is not valid
+     */
+    private long parseMac(int start, int end) {
+        long mac = 0;
+        int digits = 0;
+        for (int i = start; i < end; i++) {
+            if (json[i] == ':') {
+                continue;
+            }
+            int digit = ByteUtils.hexValue(json[i]);
+            if (digit < 0) {
+                return -1;
+            }
+            mac = mac << 4 | digit;
+            digits++;
+        }
+        return digits == 12 ? mac : -1;
+    }
+
+    private boolean equals(int start, int end, byte[] expected) {
+        if (end - start != expected.length) {
+            return false;
+        }
+        for (int i = 0; i < expected.length; i++) {
+            if (json[start + i] != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
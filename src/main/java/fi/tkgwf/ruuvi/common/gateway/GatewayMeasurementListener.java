@@ -0,0 +1,25 @@
+package fi.tkgwf.ruuvi.common.gateway;
+
+import fi.tkgwf.ruuvi.common.bean.PrimitiveRuuviMeasurement;
+
+/**
+ * Receives the measurements decoded from Ruuvi Gateway documents
+ */
+public interface GatewayMeasurementListener {
+
+    /**
+     * Called for every measurement decoded. The measurement instance is reused
+     * for the next measurement, so it must be copied if it is needed after
+     * this method returns.
+     *
+     * @param mac the address of the RuuviTag, with the first byte of the
+     * usual "AA:BB:CC:DD:EE:FF" notation as the most significant byte of the
+     * lowest 48 bits
+     * @param rssi the received signal strength in dBm
+     * @param timestamp the time the gateway received the advertisement, in
+     * seconds since the epoch, or 0 if not included in the document as an
+     * integer
+     * @param measurement the measurement
+     */
+    void onMeasurement(long mac, int rssi, long timestamp, PrimitiveRuuviMeasurement measurement);
+}
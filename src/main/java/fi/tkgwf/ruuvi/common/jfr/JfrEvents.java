@@ -0,0 +1,78 @@
+package fi.tkgwf.ruuvi.common.jfr;
+
+import fi.tkgwf.ruuvi.common.parser.ParseStatus;
+
+/**
+ * Emits the Flight Recorder events of the library. The implementation and the
+ * event classes are compiled for Java 11 into the multi-release part of the
+ * jar, and are reached only through {@link JfrSupport#EVENTS} when
+ * {@link JfrSupport#AVAILABLE} is true.
+ * <p>
+ * Timed events are started with a begin method, which returns null when the
+ * event is not enabled in any running recording, and are committed by passing
+ * the returned object to the matching end method. This is an internal
+ * interface of the library.
+ */
+public interface JfrEvents {
+
+    /**
+     * Starts timing the parsing of a packet
+     *
+     * @return the started event, or null if the event is not enabled
+     */
+    Object beginParse();
+
+    /**
+     * Stops timing the parsing of a packet and commits the event
+     *
+     * @param event the event returned by {@link #beginParse()}
+     * @param status the result of the parse
+     * @param dataFormat data format of the packet, ignored unless the status is
+     * {@link ParseStatus#OK}
+     * @param length number of bytes in the packet
+     */
+    void endParse(Object event, ParseStatus status, int dataFormat, int length);
+
+    /**
+     * Emits an event for a rejected packet if the event is enabled
+     *
+     * @param status the reason the packet was rejected
+     * @param data the array containing the raw data bytes
+     * @param offset index of the first byte of the raw data
+     * @param length number of raw data bytes
+     */
+    void rejectedPacket(ParseStatus status, byte[] data, int offset, int length);
+
+    /**
+     * Starts timing the parsing of a batch of packets
+     *
+     * @return the started event, or null if the event is not enabled
+     */
+    Object beginBatchParse();
+
+    /**
+     * Stops timing the parsing of a batch and commits the event
+     *
+     * @param event the event returned by {@link #beginBatchParse()}
+     * @param packets number of packets in the batch
+     * @param parsed number of packets parsed successfully
+     */
+    void endBatchParse(Object event, int packets, int parsed);
+
+    /**
+     * Starts timing the calculation of a batch of derived values
+     *
+     * @param calculation name of the calculated value
+     * @param values number of values calculated
+     * @return the started event, or null if the event is not enabled
+     */
+    Object beginCalculatorBatch(String calculation, int values);
+
+    /**
+     * Stops timing the calculation of a batch and commits the event
+     *
+     * @param event the event returned by
+     * {@link #beginCalculatorBatch(String, int)}
+     */
+    void endCalculatorBatch(Object event);
+}
@@ -0,0 +1,36 @@
+package fi.tkgwf.ruuvi.common.jfr;
+
+/**
+ * Tells whether the JDK Flight Recorder events can be emitted. The events are
+ * compiled for Java 11 into the multi-release part of the jar and loaded by
+ * reflection, which keeps the library usable on Java 8 and on runtimes without
+ * the {@code jdk.jfr} module, such as trimmed jlink images.
+ * <p>
+ * The events are emitted only while a recording with the event enabled is
+ * running, otherwise no event is created.
+ */
+public final class JfrSupport {
+
+    /**
+     * The event emitter, or null if the events are not available
+     */
+    public static final JfrEvents EVENTS = load();
+
+    /**
+     * True if the events can be emitted through {@link #EVENTS}
+     */
+    public static final boolean AVAILABLE = EVENTS != null;
+
+    private JfrSupport() {
+    }
+
+    private static JfrEvents load() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            return (JfrEvents) Class.forName("fi.tkgwf.ruuvi.common.jfr.FlightRecorderEvents")
+                    .getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+}
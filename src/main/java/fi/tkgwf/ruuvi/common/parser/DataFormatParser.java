@@ -1,6 +1,10 @@
 package fi.tkgwf.ruuvi.common.parser;
 
+import fi.tkgwf.ruuvi.common.bean.PrimitiveRuuviMeasurement;
 import fi.tkgwf.ruuvi.common.bean.RuuviMeasurement;
+import fi.tkgwf.ruuvi.common.utils.ByteUtils;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 /**
  * Creates {@link RuuviMeasurement} instances from raw data.
@@ -15,4 +19,109 @@ public interface DataFormatParser {
      * cannot understand the data
      */
     RuuviMeasurement parse(byte[] data);
+
+    /**
+     * Parse a raw data packet located in a range of a larger array and create a
+     * {@link RuuviMeasurement}
+     * <p>
+     * The default implementation copies the range and delegates to
+     * {@link #parse(byte[])}, the parsers of this library read the range in
+     * place.
+     *
+     * @param data the array containing the raw data bytes
+     * @param offset index of the first byte of the raw data
+     * @param length number of raw data bytes
+     * @return an instance of a {@link RuuviMeasurement}, or null if this parser
+     * cannot understand the data
+     */
+    default RuuviMeasurement parse(byte[] data, int offset, int length) {
+        return parse(Arrays.copyOfRange(data, offset, offset + length));
+    }
+
+    /**
+     * Parse the remaining bytes of a buffer and create a
+     * {@link RuuviMeasurement}. The position of the buffer is not changed.
+     * <p>
+     * Buffers backed by an accessible array are read in place, other buffers
+     * (such as direct buffers) are copied to a temporary array first.
+     *
+     * @param buffer the buffer containing the raw data bytes between its
+     * position and limit
+     * @return an instance of a {@link RuuviMeasurement}, or null if this parser
+     * cannot understand the data
+     */
+    default RuuviMeasurement parse(ByteBuffer buffer) {
+        if (buffer.hasArray()) {
+            return parse(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+        }
+        byte[] data = new byte[buffer.remaining()];
+        buffer.duplicate().get(data);
+        return parse(data, 0, data.length);
+    }
+
+    /**
+     * Parse a raw data packet located in a range of a larger array into a
+     * caller supplied {@link PrimitiveRuuviMeasurement}, which allows reusing
+     * the same instance for every packet. The returned status tells why the
+     * packet was rejected.
+     * <p>
+     * The default implementation copies the result of
+     * {@link #parse(byte[], int, int)} and cannot tell the reason of a
+     * failure, so it reports every failure as
+     * {@link ParseStatus#UNKNOWN_FORMAT}. The parsers of this library decode
+     * directly into the given measurement without allocating.
+     *
+     * @param data the array containing the raw data bytes
+     * @param offset index of the first byte of the raw data
+     * @param length number of raw data bytes
+     * @param measurement the measurement to fill, left untouched if this parser
+     * cannot understand the data
+     * @return {@link ParseStatus#OK} if the data was parsed, otherwise the
+     * reason why this parser cannot understand the data
+     */
+    default ParseStatus parse(byte[] data, int offset, int length, PrimitiveRuuviMeasurement measurement) {
+        RuuviMeasurement m = parse(data, offset, length);
+        if (m == null) {
+            return ParseStatus.UNKNOWN_FORMAT;
+        }
+        measurement.copyFrom(m);
+        return ParseStatus.OK;
+    }
+
+    /**
+     * Parse a hex encoded raw data packet and create a
+     * {@link RuuviMeasurement}
+     *
+     * @param hex the raw data bytes as hex characters
+     * @return an instance of a {@link RuuviMeasurement}, or null if the
+     * characters are not valid hex or this parser cannot understand the data
+     */
+    default RuuviMeasurement parseHex(CharSequence hex) {
+        byte[] data = ByteUtils.decodeHex(hex);
+        return data == null ? null : parse(data, 0, data.length);
+    }
+
+    /**
+     * Parse a hex encoded raw data packet into a caller supplied
+     * {@link PrimitiveRuuviMeasurement}. The packet is decoded into the given
+     * buffer, which allows reusing the same buffer and measurement for every
+     * packet.
+     *
+     * @param hex the raw data bytes as hex characters
+     * @param buffer the array to decode the raw data bytes into, must hold at
+     * least half as many bytes as there are characters
+     * @param measurement the measurement to fill, left untouched if the packet
+     * cannot be parsed
+     * @return {@link ParseStatus#OK} if the data was parsed,
+     * {@link ParseStatus#MALFORMED} if the characters are not valid hex,
+     * otherwise the reason why this parser cannot understand the data
+     * @throws IndexOutOfBoundsException if the buffer is too small
+     */
+    default ParseStatus parseHex(CharSequence hex, byte[] buffer, PrimitiveRuuviMeasurement measurement) {
+        int length = ByteUtils.decodeHex(hex, 0, hex.length(), buffer, 0);
+        if (length < 0) {
+            return ParseStatus.MALFORMED;
+        }
+        return parse(buffer, 0, length, measurement);
+    }
 }
@@ -0,0 +1,43 @@
+package fi.tkgwf.ruuvi.common.parser;
+
+/**
+ * The result of parsing a raw data packet, explaining why a packet was
+ * rejected. Counting these allows telling noise from other devices apart from
+ * damaged Ruuvi packets without looking at the payloads.
+ */
+public enum ParseStatus {
+
+    /**
+     * The packet was parsed successfully
+     */
+    OK,
+    /**
+     * The packet does not come from a RuuviTag, for example it has an unknown
+     * company identifier or is not a Ruuvi Eddystone URL
+     */
+    NOT_RUUVI,
+    /**
+     * The packet has a Ruuvi header but is too short for its data format
+     */
+    TRUNCATED,
+    /**
+     * The packet has a Ruuvi header but a data format the parser does not
+     * support
+     */
+    UNKNOWN_FORMAT,
+    /**
+     * The packet has a Ruuvi header and a sufficient length but its contents
+     * cannot be decoded, for example invalid base64 in an Eddystone URL, or
+     * the packet was given as invalid hex
+     */
+    MALFORMED;
+
+    /**
+     * Checks whether the packet was parsed successfully
+     *
+     * @return true if this is {@link #OK}
+     */
+    public boolean isOk() {
+        return this == OK;
+    }
+}
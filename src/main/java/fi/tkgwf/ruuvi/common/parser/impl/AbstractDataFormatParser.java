@@ -0,0 +1,108 @@
+package fi.tkgwf.ruuvi.common.parser.impl;
+
+import fi.tkgwf.ruuvi.common.bean.MeasurementField;
+import fi.tkgwf.ruuvi.common.bean.PrimitiveRuuviMeasurement;
+import fi.tkgwf.ruuvi.common.bean.RuuviMeasurement;
+import fi.tkgwf.ruuvi.common.parser.DataFormatParser;
+import fi.tkgwf.ruuvi.common.parser.ParseStatus;
+import java.util.Set;
+
+/**
+ * Base class for parsers which decode into a
+ * {@link PrimitiveRuuviMeasurement}. The {@link RuuviMeasurement} returning
+ * methods are implemented on top of that, so subclasses only need to implement
+ * {@link #parse(byte[], int, int, PrimitiveRuuviMeasurement, int)}.
+ * <p>
+ * A parser can be created for a fixed set of fields, in which case only those
+ * fields are decoded and every other field is left as not available. This
+ * skips the decoding, "not available" checks and scaling of the fields that
+ * are not needed.
+ */
+public abstract class AbstractDataFormatParser implements DataFormatParser {
+
+    /**
+     * The MAC address broadcast when it is not available, FF:FF:FF:FF:FF:FF
+     */
+    static final long NOT_AVAILABLE_MAC = 0xFFFFFFFFFFFFL;
+
+    private final int fields;
+
+    /**
+     * Creates a parser which decodes every field
+     */
+    protected AbstractDataFormatParser() {
+        this.fields = MeasurementField.ALL;
+    }
+
+    /**
+     * Creates a parser which decodes only the given fields
+     *
+     * @param fields the fields to decode
+     */
+    protected AbstractDataFormatParser(Set<MeasurementField> fields) {
+        this.fields = MeasurementField.mask(fields);
+    }
+
+    @Override
+    public RuuviMeasurement parse(byte[] data) {
+        return parse(data, 0, data.length);
+    }
+
+    @Override
+    public RuuviMeasurement parse(byte[] data, int offset, int length) {
+        PrimitiveRuuviMeasurement m = new PrimitiveRuuviMeasurement();
+        return parse(data, offset, length, m) == ParseStatus.OK ? m.toRuuviMeasurement() : null;
+    }
+
+    @Override
+    public ParseStatus parse(byte[] data, int offset, int length, PrimitiveRuuviMeasurement measurement) {
+        return parse(data, offset, length, measurement, fields);
+    }
+
+    /**
+     * Parse a raw data packet, decoding only the requested fields. The header
+     * of the packet is validated regardless of the requested fields.
+     *
+     * @param data the array containing the raw data bytes
+     * @param offset index of the first byte of the raw data
+     * @param length number of raw data bytes
+     * @param measurement the measurement to fill, left untouched if this parser
+     * cannot understand the data
+     * @param fields mask of the fields to decode, see
+     * {@link MeasurementField#mask()}
+     * @return {@link ParseStatus#OK} if the data was parsed, otherwise the
+     * reason why this parser cannot understand the data
+     */
+    abstract ParseStatus parse(byte[] data, int offset, int length, PrimitiveRuuviMeasurement measurement, int fields);
+
+    /**
+     * Decodes the requested fields of a packet which has already been
+     * validated by {@link #parse(byte[], int, int, PrimitiveRuuviMeasurement, int)}
+     * of this parser, without validating it again. The measurement must have
+     * been reset to the data format of the packet, fields that are not
+     * requested are left as they are.
+     *
+     * @param data the array containing the raw data bytes
+     * @param offset index of the first byte of the raw data
+     * @param length number of raw data bytes
+     * @param measurement the measurement to add the decoded fields to
+     * @param fields mask of the fields to decode, see
+     * {@link MeasurementField#mask()}
+     */
+    abstract void decode(byte[] data, int offset, int length, PrimitiveRuuviMeasurement measurement, int fields);
+
+    static boolean requested(int fields, MeasurementField field) {
+        return (fields & field.mask()) != 0;
+    }
+
+    /**
+     * Reads a 6 byte big-endian MAC address
+     */
+    static long readMac(byte[] data, int offset) {
+        long mac = 0;
+        for (int i = 0; i < 6; i++) {
+            mac = mac << 8 | data[offset + i] & 0xFF;
+        }
+        return mac;
+    }
+}
@@ -1,66 +1,179 @@
 package fi.tkgwf.ruuvi.common.parser.impl;
 
-import fi.tkgwf.ruuvi.common.bean.RuuviMeasurement;
-import fi.tkgwf.ruuvi.common.parser.DataFormatParser;
+import fi.tkgwf.ruuvi.common.bean.MeasurementField;
+import fi.tkgwf.ruuvi.common.bean.PrimitiveRuuviMeasurement;
+import fi.tkgwf.ruuvi.common.parser.ParseStatus;
+import java.util.Arrays;
+import java.util.Set;
 
-public abstract class AbstractEddystoneURLParser implements DataFormatParser {
+/**
+ * Base class for the Eddystone URL based data formats 2 and 4, where the
+ * measurement is base64 encoded in the hash part of a "https://ruu.vi/#" URL.
+ * The URL is validated and decoded in place, without creating Strings or
+ * intermediate arrays. Both the URL-safe and the traditional base64 alphabet
+ * are accepted, with or without "=" padding at the end.
+ */
+public abstract class AbstractEddystoneURLParser extends AbstractDataFormatParser {
 
-    private static final String RUUVI_BASE_URL = "ruu.vi/#";
+    private static final byte[] RUUVI_BASE_URL = { 'r', 'u', 'u', '.', 'v', 'i', '/', '#' };
+    /**
+     * Index of the first character of the URL hash from the start of the
+     * Eddystone service data
+     */
+    static final int HASH_OFFSET = 5 + RUUVI_BASE_URL.length;
+    private static final byte[] BASE64_VALUES = new byte[128];
 
-    abstract protected byte[] base64ToByteArray(String base64);
+    static {
+        Arrays.fill(BASE64_VALUES, (byte) -1);
+        for (int i = 0; i < 26; i++) {
+            BASE64_VALUES['A' + i] = (byte) i;
+            BASE64_VALUES['a' + i] = (byte) (26 + i);
+        }
+        for (int i = 0; i < 10; i++) {
+            BASE64_VALUES['0' + i] = (byte) (52 + i);
+        }
+        // Ruuvi uses URL-safe base64, the "traditional" characters are accepted as well
+        BASE64_VALUES['-'] = 62;
+        BASE64_VALUES['+'] = 62;
+        BASE64_VALUES['_'] = 63;
+        BASE64_VALUES['/'] = 63;
+    }
+
+    protected AbstractEddystoneURLParser() {
+    }
+
+    /**
+     * Creates a parser which decodes only the given fields
+     *
+     * @param fields the fields to decode
+     */
+    protected AbstractEddystoneURLParser(Set<MeasurementField> fields) {
+        super(fields);
+    }
+
+    /**
+     * Gets the number of characters at the start of the URL hash that contain
+     * the base64 encoded measurement in this data format
+     *
+     * @param hashLength number of characters in the URL hash
+     * @return number of characters to decode
+     */
+    protected abstract int base64Length(int hashLength);
+
+    @Override
+    ParseStatus parse(byte[] data, int offset, int length, PrimitiveRuuviMeasurement m, int fields) {
+        ParseStatus urlStatus = checkRuuviUrl(data, offset, length);
+        if (urlStatus != ParseStatus.OK) {
+            return urlStatus;
+        }
+        int hashOffset = offset + HASH_OFFSET;
+        int base64Length = base64Length(length - HASH_OFFSET);
+        if (base64Length < 8) {
+            return ParseStatus.TRUNCATED; // too short for a measurement
+        }
+        int padding = 0;
+        while (padding < 2 && base64Length - padding > 8 && data[hashOffset + base64Length - 1 - padding] == '=') {
+            padding++;
+        }
+        if (padding > 0 && base64Length % 4 != 0) {
+            return ParseStatus.MALFORMED; // padding must complete the last quantum
+        }
+        if (base64Length % 4 == 1) {
+            return ParseStatus.MALFORMED; // not valid base64 (V2 when parsing V4 and vice versa)
+        }
+        for (int i = 8; i < base64Length - padding; i++) {
+            if (base64Value(data[hashOffset + i]) < 0) {
+                return ParseStatus.MALFORMED; // not valid base64
+            }
+        }
+        int high = decodeBase64Quantum(data, hashOffset); // measurement bytes 0-2
+        int low = decodeBase64Quantum(data, hashOffset + 4); // measurement bytes 3-5
+        if (high < 0 || low < 0) {
+            return ParseStatus.MALFORMED; // not valid base64
+        }
+        int dataFormat = high >>> 16;
+        if (dataFormat != 2 && dataFormat != 4) {
+            return ParseStatus.UNKNOWN_FORMAT;
+        }
+        m.reset(dataFormat);
+        decode(high, low, m, fields);
+        return ParseStatus.OK;
+    }
 
     @Override
-    public RuuviMeasurement parse(byte[] data) {
-        String hashPart = getRuuviUrlHashPart(data);
-        if (hashPart == null) {
-            return null; // not a ruuvi url
-        }
-        byte[] measurementData;
-        try {
-            measurementData = base64ToByteArray(hashPart);
-        } catch (IllegalArgumentException ex) {
-            return null; // V2 format will throw this when trying to parse V4 and vice versa
-        }
-        if (measurementData.length < 6 || measurementData[0] != 2 && measurementData[0] != 4) {
-            return null; // unknown type
-        }
-        RuuviMeasurement measurement = new RuuviMeasurement();
-        measurement.setDataFormat(measurementData[0] & 0xFF);
+    void decode(byte[] data, int offset, int length, PrimitiveRuuviMeasurement m, int fields) {
+        int high = decodeBase64Quantum(data, offset + HASH_OFFSET);
+        int low = decodeBase64Quantum(data, offset + HASH_OFFSET + 4);
+        decode(high, low, m, fields);
+    }
 
-        measurement.setHumidity(((measurementData[1] & 0xFF)) / 2d);
+    /**
+     * Decodes the fields of the first 6 measurement bytes, given as two 24 bit
+     * big-endian integers
+     */
+    private static void decode(int high, int low, PrimitiveRuuviMeasurement m, int fields) {
+        if (requested(fields, MeasurementField.HUMIDITY)) {
+            m.setHumidity(((high >>> 8) & 0xFF) / 2d);
+        }
 
-        int temperatureSign = (measurementData[2] >> 7) & 1;
-        int temperatureBase = measurementData[2] & 0x7F;
-        double temperatureFraction = measurementData[3] / 100d;
-        measurement.setTemperature(temperatureBase + temperatureFraction);
-        if (temperatureSign == 1) {
-            measurement.setTemperature(measurement.getTemperature() * -1);
+        if (requested(fields, MeasurementField.TEMPERATURE)) {
+            int temperatureSign = (high >> 7) & 1;
+            int temperatureBase = high & 0x7F;
+            double temperatureFraction = ((byte) (low >>> 16)) / 100d;
+            m.setTemperature(temperatureBase + temperatureFraction);
+            if (temperatureSign == 1) {
+                m.setTemperature(m.getTemperature() * -1);
+            }
         }
 
-        int pressureHi = measurementData[4] & 0xFF;
-        int pressureLo = measurementData[5] & 0xFF;
-        measurement.setPressure((double) pressureHi * 256 + 50000 + pressureLo);
-        return measurement;
+        if (requested(fields, MeasurementField.PRESSURE)) {
+            int pressureHi = (low >>> 8) & 0xFF;
+            int pressureLo = low & 0xFF;
+            m.setPressure((double) pressureHi * 256 + 50000 + pressureLo);
+        }
     }
 
-    private String getRuuviUrlHashPart(byte[] data) {
-        if (data.length < 15) {
-            return null; // too short
+    /**
+     * Checks that the data is an Eddystone URL starting with the Ruuvi base
+     * URL. Data which is cut short is reported as truncated only if all the
+     * bytes present match.
+     */
+    private static ParseStatus checkRuuviUrl(byte[] data, int offset, int length) {
+        if (length < 2 || (data[offset] & 0xFF) != 0xAA || (data[offset + 1] & 0xFF) != 0xFE) {
+            return ParseStatus.NOT_RUUVI; // not an eddystone UUID
         }
-        if ((data[0] & 0xFF) != 0xAA && (data[1] & 0xFF) != 0xFE) {
-            return null; // not an eddystone UUID
+        if (length > 2 && data[offset + 2] != 0x10) {
+            return ParseStatus.NOT_RUUVI; // not an eddystone URL
         }
-        if (data[2] != 0x10) {
-            return null; // not an eddystone URL
+        if (length > 4 && data[offset + 4] != 0x03) {
+            return ParseStatus.NOT_RUUVI; // not https://
         }
-        if (data[4] != 0x03) {
-            return null; // not https://
+        for (int i = 0; i < RUUVI_BASE_URL.length && 5 + i < length; i++) {
+            if (data[offset + 5 + i] != RUUVI_BASE_URL[i]) {
+                return ParseStatus.NOT_RUUVI; // not a ruuvi url
+            }
         }
-        String basePart = new String(data, 5, data.length - (5));
-        if (!basePart.startsWith(RUUVI_BASE_URL)) {
-            return null; // not a ruuvi url
+        return length < HASH_OFFSET ? ParseStatus.TRUNCATED : ParseStatus.OK;
+    }
+
+    /**
+     * Decodes 4 base64 characters into 3 bytes
+     *
+     * @return the bytes as a 24 bit big-endian integer, or -1 if any of the
+     * characters is not a base64 character
+     */
+    private static int decodeBase64Quantum(byte[] data, int offset) {
+        int a = base64Value(data[offset]);
+        int b = base64Value(data[offset + 1]);
+        int c = base64Value(data[offset + 2]);
+        int d = base64Value(data[offset + 3]);
+        if ((a | b | c | d) < 0) {
+            return -1;
         }
-        int preLength = 5 + RUUVI_BASE_URL.length();
-        return new String(data, preLength, data.length - preLength);
+        return a << 18 | b << 12 | c << 6 | d;
+    }
+
+    private static int base64Value(byte c) {
+        return c < 0 ? -1 : BASE64_VALUES[c];
     }
 }
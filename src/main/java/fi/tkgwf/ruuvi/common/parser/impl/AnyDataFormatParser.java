@@ -1,27 +1,111 @@
 package fi.tkgwf.ruuvi.common.parser.impl;
 
-import fi.tkgwf.ruuvi.common.bean.RuuviMeasurement;
-import fi.tkgwf.ruuvi.common.parser.DataFormatParser;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.Objects;
+import fi.tkgwf.ruuvi.common.bean.MeasurementField;
+import fi.tkgwf.ruuvi.common.bean.PrimitiveRuuviMeasurement;
+import fi.tkgwf.ruuvi.common.jfr.JfrSupport;
+import fi.tkgwf.ruuvi.common.parser.ParseStatus;
+import java.util.EnumSet;
+import java.util.Set;
 
-public class AnyDataFormatParser implements DataFormatParser {
+/**
+ * Parses any supported data format by inspecting the header of the data once
+ * and delegating to the parser of that format.
+ * <p>
+ * Manufacturer specific data (company identifier 0x0499) is dispatched with a
+ * lookup table indexed by the data format byte, Eddystone URL data (0xAA 0xFE)
+ * is handed to the data format 2 or 4 parser based on the length of the URL.
+ * Anything else is rejected without invoking any parser.
+ * <p>
+ * When Flight Recorder is available, a parse event and for rejected packets a
+ * rejected packet event is emitted if enabled in the running recording, see
+ * {@link JfrSupport}.
+ */
+public class AnyDataFormatParser extends AbstractDataFormatParser {
 
-    private final List<DataFormatParser> parsers;
+    private final AbstractDataFormatParser[] manufacturerDataParsers;
+    private final AbstractDataFormatParser dataFormat2Parser;
+    private final AbstractDataFormatParser dataFormat4Parser;
 
     public AnyDataFormatParser() {
-        parsers = new LinkedList<>();
-        parsers.add(new DataFormat2Parser());
-        parsers.add(new DataFormat3Parser());
-        parsers.add(new DataFormat4Parser());
-        parsers.add(new DataFormat5Parser());
-        parsers.add(new DataFormat6Parser());
-        parsers.add(new DataFormatE1Parser());
+        this(EnumSet.allOf(MeasurementField.class));
     }
-    
+
+    /**
+     * Creates a parser which decodes only the given fields
+     *
+     * @param fields the fields to decode
+     */
+    public AnyDataFormatParser(Set<MeasurementField> fields) {
+        super(fields);
+        manufacturerDataParsers = new AbstractDataFormatParser[256];
+        manufacturerDataParsers[0x03] = new DataFormat3Parser();
+        manufacturerDataParsers[0x05] = new DataFormat5Parser();
+        manufacturerDataParsers[0x06] = new DataFormat6Parser();
+        manufacturerDataParsers[0xE1] = new DataFormatE1Parser();
+        dataFormat2Parser = new DataFormat2Parser();
+        dataFormat4Parser = new DataFormat4Parser();
+    }
+
     @Override
-    public RuuviMeasurement parse(byte[] data) {
-        return parsers.stream().map(h -> h.parse(data)).filter(Objects::nonNull).findAny().orElse(null);
+    public ParseStatus parse(byte[] data, int offset, int length, PrimitiveRuuviMeasurement measurement) {
+        if (!JfrSupport.AVAILABLE) {
+            return super.parse(data, offset, length, measurement);
+        }
+        Object event = JfrSupport.EVENTS.beginParse();
+        ParseStatus status = super.parse(data, offset, length, measurement);
+        if (event != null) {
+            JfrSupport.EVENTS.endParse(event, status, measurement.getDataFormat(), length);
+        }
+        if (status != ParseStatus.OK) {
+            JfrSupport.EVENTS.rejectedPacket(status, data, offset, length);
+        }
+        return status;
+    }
+
+    @Override
+    ParseStatus parse(byte[] data, int offset, int length, PrimitiveRuuviMeasurement m, int fields) {
+        if (length < 2) {
+            return ParseStatus.NOT_RUUVI; // too short to have any known header
+        }
+        int b0 = data[offset] & 0xFF;
+        int b1 = data[offset + 1] & 0xFF;
+        if (b0 == 0x99 && b1 == 0x04) { // 0x0499, Ruuvi company identifier
+            if (length < 3) {
+                return ParseStatus.TRUNCATED; // no data format byte
+            }
+            AbstractDataFormatParser parser = manufacturerDataParsers[data[offset + 2] & 0xFF];
+            return parser != null ? parser.parse(data, offset, length, m, fields) : ParseStatus.UNKNOWN_FORMAT;
+        }
+        if (b0 == 0xAA && b1 == 0xFE) { // Eddystone UUID
+            return eddystoneParser(length).parse(data, offset, length, m, fields);
+        }
+        return ParseStatus.NOT_RUUVI;
+    }
+
+    @Override
+    void decode(byte[] data, int offset, int length, PrimitiveRuuviMeasurement m, int fields) {
+        decoderFor(data, offset, length).decode(data, offset, length, m, fields);
+    }
+
+    /**
+     * Finds the parser of a packet which has already been validated, so that
+     * its fields can be decoded without dispatching again
+     *
+     * @param data the array containing the raw data bytes
+     * @param offset index of the first byte of the raw data
+     * @param length number of raw data bytes
+     * @return the parser of the data format of the packet
+     */
+    AbstractDataFormatParser decoderFor(byte[] data, int offset, int length) {
+        if ((data[offset] & 0xFF) == 0x99) {
+            return manufacturerDataParsers[data[offset + 2] & 0xFF];
+        }
+        return eddystoneParser(length);
+    }
+
+    private AbstractDataFormatParser eddystoneParser(int length) {
+        // The V4 URL hash has an extra "id" character, which makes its length invalid for base64
+        int hashLength = length - AbstractEddystoneURLParser.HASH_OFFSET;
+        return hashLength % 4 == 1 ? dataFormat4Parser : dataFormat2Parser;
     }
 }
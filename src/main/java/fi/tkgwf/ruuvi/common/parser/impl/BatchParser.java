@@ -0,0 +1,81 @@
+package fi.tkgwf.ruuvi.common.parser.impl;
+
+import fi.tkgwf.ruuvi.common.bean.MeasurementColumns;
+import fi.tkgwf.ruuvi.common.bean.PrimitiveRuuviMeasurement;
+import fi.tkgwf.ruuvi.common.jfr.JfrSupport;
+import fi.tkgwf.ruuvi.common.parser.DataFormatParser;
+import fi.tkgwf.ruuvi.common.parser.ParseStatus;
+
+/**
+ * Parses batches of raw data packets into {@link MeasurementColumns}, one row
+ * per packet. The packets are given as ranges of a single array, which allows
+ * parsing a whole batch without copying or allocating.
+ * <p>
+ * A batch parse event is emitted for every batch when Flight Recorder is
+ * available and the event is enabled in the running recording, see
+ * {@link JfrSupport}.
+ * <p>
+ * Instances keep a scratch measurement and are not thread safe, use one per
+ * thread.
+ */
+public class BatchParser {
+
+    private final DataFormatParser parser;
+    private final PrimitiveRuuviMeasurement scratch = new PrimitiveRuuviMeasurement();
+
+    /**
+     * Creates a batch parser for every supported data format
+     */
+    public BatchParser() {
+        this(new AnyDataFormatParser());
+    }
+
+    /**
+     * Creates a batch parser using the given parser, for example a parser
+     * decoding only the fields that are needed
+     *
+     * @param parser the parser to parse each packet with
+     */
+    public BatchParser(DataFormatParser parser) {
+        this.parser = parser;
+    }
+
+    /**
+     * Parses a batch of packets. Packet {@code i} is stored in
+     * {@code data[offsets[i]]} to {@code data[offsets[i] + lengths[i] - 1]}
+     * and its measurement is stored in row {@code i} of the columns. Rows of
+     * packets which cannot be parsed have data format 0 and no valid fields.
+     *
+     * @param data the array containing the packets
+     * @param offsets index of the first byte of each packet
+     * @param lengths number of bytes of each packet
+     * @param count number of packets
+     * @param columns the columns to store the measurements into, previous
+     * contents are discarded
+     * @return the number of packets parsed successfully
+     * @throws IllegalArgumentException if the columns cannot hold count rows
+     */
+    public int parse(byte[] data, int[] offsets, int[] lengths, int count, MeasurementColumns columns) {
+        if (!JfrSupport.AVAILABLE) {
+            return parseBatch(data, offsets, lengths, count, columns);
+        }
+        Object event = JfrSupport.EVENTS.beginBatchParse();
+        int parsed = parseBatch(data, offsets, lengths, count, columns);
+        if (event != null) {
+            JfrSupport.EVENTS.endBatchParse(event, count, parsed);
+        }
+        return parsed;
+    }
+
+    private int parseBatch(byte[] data, int[] offsets, int[] lengths, int count, MeasurementColumns columns) {
+        columns.reset(count);
+        int parsed = 0;
+        for (int i = 0; i < count; i++) {
+            if (parser.parse(data, offsets[i], lengths[i], scratch) == ParseStatus.OK) {
+                columns.set(i, scratch);
+                parsed++;
+            }
+        }
+        return parsed;
+    }
+}
@@ -1,11 +1,24 @@
 package fi.tkgwf.ruuvi.common.parser.impl;
 
-import java.util.Base64;
+import fi.tkgwf.ruuvi.common.bean.MeasurementField;
+import java.util.Set;
 
 public class DataFormat2Parser extends AbstractEddystoneURLParser {
 
+    public DataFormat2Parser() {
+    }
+
+    /**
+     * Creates a parser which decodes only the given fields
+     *
+     * @param fields the fields to decode
+     */
+    public DataFormat2Parser(Set<MeasurementField> fields) {
+        super(fields);
+    }
+
     @Override
-    protected byte[] base64ToByteArray(String base64) {
-        return Base64.getDecoder().decode(base64.replace('-', '+').replace('_', '/')); // Ruuvi uses URL-safe Base64, convert that to "traditional" Base64
+    protected int base64Length(int hashLength) {
+        return hashLength; // The whole hash is the measurement
     }
 }
@@ -1,46 +1,85 @@
 package fi.tkgwf.ruuvi.common.parser.impl;
 
-import fi.tkgwf.ruuvi.common.bean.RuuviMeasurement;
-import java.util.Arrays;
-import fi.tkgwf.ruuvi.common.parser.DataFormatParser;
+import fi.tkgwf.ruuvi.common.bean.MeasurementField;
+import fi.tkgwf.ruuvi.common.bean.PrimitiveRuuviMeasurement;
+import fi.tkgwf.ruuvi.common.parser.ParseStatus;
+import java.util.Set;
 
-public class DataFormat3Parser implements DataFormatParser {
+public class DataFormat3Parser extends AbstractDataFormatParser {
 
     private final int[] RUUVI_COMPANY_IDENTIFIER = {0x99, 0x04}; // 0x0499
 
+    public DataFormat3Parser() {
+    }
+
+    /**
+     * Creates a parser which decodes only the given fields
+     *
+     * @param fields the fields to decode
+     */
+    public DataFormat3Parser(Set<MeasurementField> fields) {
+        super(fields);
+    }
+
     @Override
-    public RuuviMeasurement parse(byte[] data) {
-        if (data.length < 2 || (data[0] & 0xFF) != RUUVI_COMPANY_IDENTIFIER[0] || (data[1] & 0xFF) != RUUVI_COMPANY_IDENTIFIER[1]) {
-            return null;
+    ParseStatus parse(byte[] data, int offset, int length, PrimitiveRuuviMeasurement m, int fields) {
+        if (length < 2 || (data[offset] & 0xFF) != RUUVI_COMPANY_IDENTIFIER[0]
+                || (data[offset + 1] & 0xFF) != RUUVI_COMPANY_IDENTIFIER[1]) {
+            return ParseStatus.NOT_RUUVI;
         }
-        data = Arrays.copyOfRange(data, 2, data.length); // discard the first 2 bytes, the company identifier
-        if (data.length < 14 || data[0] != 3) {
-            return null;
+        int o = offset + 2; // skip the first 2 bytes, the company identifier
+
+        if (length - 2 < 1) {
+            return ParseStatus.TRUNCATED; // no data format byte
+        }
+        if (data[o] != 3) {
+            return ParseStatus.UNKNOWN_FORMAT;
         }
-        RuuviMeasurement m = new RuuviMeasurement();
-        m.setDataFormat(data[0] & 0xFF);
+        if (length - 2 < 14) {
+            return ParseStatus.TRUNCATED;
+        }
+        m.reset(data[o] & 0xFF);
+        decode(data, offset, length, m, fields);
+        return ParseStatus.OK;
+    }
 
-        m.setHumidity((Double) ((double) (data[1] & 0xFF)) / 2d);
+    @Override
+    void decode(byte[] data, int offset, int length, PrimitiveRuuviMeasurement m, int fields) {
+        int o = offset + 2; // skip the first 2 bytes, the company identifier
+        if (requested(fields, MeasurementField.HUMIDITY)) {
+            m.setHumidity(((double) (data[o + 1] & 0xFF)) / 2d);
+        }
 
-        int temperatureSign = (data[2] >> 7) & 1;
-        int temperatureBase = (data[2] & 0x7F);
-        double temperatureFraction = ((float) data[3]) / 100d;
-        m.setTemperature(temperatureBase + temperatureFraction);
-        if (temperatureSign == 1) {
-            m.setTemperature(m.getTemperature() * -1);
+        if (requested(fields, MeasurementField.TEMPERATURE)) {
+            int temperatureSign = (data[o + 2] >> 7) & 1;
+            int temperatureBase = (data[o + 2] & 0x7F);
+            double temperatureFraction = ((float) data[o + 3]) / 100d;
+            m.setTemperature(temperatureBase + temperatureFraction);
+            if (temperatureSign == 1) {
+                m.setTemperature(m.getTemperature() * -1);
+            }
         }
 
-        int pressureHi = data[4] & 0xFF;
-        int pressureLo = data[5] & 0xFF;
-        m.setPressure((Double) (double) pressureHi * 256 + 50000 + pressureLo);
+        if (requested(fields, MeasurementField.PRESSURE)) {
+            int pressureHi = data[o + 4] & 0xFF;
+            int pressureLo = data[o + 5] & 0xFF;
+            m.setPressure((double) pressureHi * 256 + 50000 + pressureLo);
+        }
 
-        m.setAccelerationX((data[6] << 8 | data[7] & 0xFF) / 1000d);
-        m.setAccelerationY((data[8] << 8 | data[9] & 0xFF) / 1000d);
-        m.setAccelerationZ((data[10] << 8 | data[11] & 0xFF) / 1000d);
+        if (requested(fields, MeasurementField.ACCELERATION_X)) {
+            m.setAccelerationX((data[o + 6] << 8 | data[o + 7] & 0xFF) / 1000d);
+        }
+        if (requested(fields, MeasurementField.ACCELERATION_Y)) {
+            m.setAccelerationY((data[o + 8] << 8 | data[o + 9] & 0xFF) / 1000d);
+        }
+        if (requested(fields, MeasurementField.ACCELERATION_Z)) {
+            m.setAccelerationZ((data[o + 10] << 8 | data[o + 11] & 0xFF) / 1000d);
+        }
 
-        int battHi = data[12] & 0xFF;
-        int battLo = data[13] & 0xFF;
-        m.setBatteryVoltage((battHi * 256 + battLo) / 1000d);
-        return m;
+        if (requested(fields, MeasurementField.BATTERY_VOLTAGE)) {
+            int battHi = data[o + 12] & 0xFF;
+            int battLo = data[o + 13] & 0xFF;
+            m.setBatteryVoltage((battHi * 256 + battLo) / 1000d);
+        }
     }
 }
@@ -1,12 +1,24 @@
 package fi.tkgwf.ruuvi.common.parser.impl;
 
-import java.util.Base64;
+import fi.tkgwf.ruuvi.common.bean.MeasurementField;
+import java.util.Set;
 
 public class DataFormat4Parser extends AbstractEddystoneURLParser {
 
+    public DataFormat4Parser() {
+    }
+
+    /**
+     * Creates a parser which decodes only the given fields
+     *
+     * @param fields the fields to decode
+     */
+    public DataFormat4Parser(Set<MeasurementField> fields) {
+        super(fields);
+    }
+
     @Override
-    protected byte[] base64ToByteArray(String base64) {
-        base64 = base64.substring(0, base64.length() - 1); // The extra character used for "id" alone at the end makes the base64 string to be invalid, discard it
-        return Base64.getDecoder().decode(base64.replace('-', '+').replace('_', '/')); // Ruuvi uses URL-safe Base64, convert that to "traditional" Base64
+    protected int base64Length(int hashLength) {
+        return hashLength - 1; // The extra character used for "id" alone at the end makes the base64 string to be invalid, discard it
     }
 }
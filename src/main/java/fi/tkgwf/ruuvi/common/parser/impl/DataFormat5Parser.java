@@ -1,64 +1,96 @@
 package fi.tkgwf.ruuvi.common.parser.impl;
 
-import fi.tkgwf.ruuvi.common.bean.RuuviMeasurement;
+import fi.tkgwf.ruuvi.common.bean.MeasurementField;
+import fi.tkgwf.ruuvi.common.bean.PrimitiveRuuviMeasurement;
+import fi.tkgwf.ruuvi.common.parser.ParseStatus;
 import fi.tkgwf.ruuvi.common.utils.ByteUtils;
-import java.util.Arrays;
-import fi.tkgwf.ruuvi.common.parser.DataFormatParser;
+import java.util.Set;
 
-public class DataFormat5Parser implements DataFormatParser {
+public class DataFormat5Parser extends AbstractDataFormatParser {
 
     private final int[] RUUVI_COMPANY_IDENTIFIER = { 0x99, 0x04 }; // 0x0499
 
+    public DataFormat5Parser() {
+    }
+
+    /**
+     * Creates a parser which decodes only the given fields
+     *
+     * @param fields the fields to decode
+     */
+    public DataFormat5Parser(Set<MeasurementField> fields) {
+        super(fields);
+    }
+
     @Override
-    public RuuviMeasurement parse(byte[] data) {
-        if (data.length < 2 || (data[0] & 0xFF) != RUUVI_COMPANY_IDENTIFIER[0]
-                || (data[1] & 0xFF) != RUUVI_COMPANY_IDENTIFIER[1]) {
-            return null;
+    ParseStatus parse(byte[] data, int offset, int length, PrimitiveRuuviMeasurement m, int fields) {
+        if (length < 2 || (data[offset] & 0xFF) != RUUVI_COMPANY_IDENTIFIER[0]
+                || (data[offset + 1] & 0xFF) != RUUVI_COMPANY_IDENTIFIER[1]) {
+            return ParseStatus.NOT_RUUVI;
+        }
+        int o = offset + 2; // skip the first 2 bytes, the company identifier
+
+        if (length - 2 < 1) {
+            return ParseStatus.TRUNCATED; // no data format byte
         }
-        data = Arrays.copyOfRange(data, 2, data.length); // discard the first 2 bytes, the company identifier
-        if (data.length < 24 || data[0] != 5) {
-            return null;
+        if (data[o] != 5) {
+            return ParseStatus.UNKNOWN_FORMAT;
         }
-        RuuviMeasurement m = new RuuviMeasurement();
-        m.setDataFormat(data[0] & 0xFF);
+        if (length - 2 < 24) {
+            return ParseStatus.TRUNCATED;
+        }
+        m.reset(data[o] & 0xFF);
+        decode(data, offset, length, m, fields);
+        return ParseStatus.OK;
+    }
 
-        if (!ByteUtils.isMinSignedShort(data[1], data[2])) {
-            m.setTemperature((data[1] << 8 | data[2] & 0xFF) / 200d);
+    @Override
+    void decode(byte[] data, int offset, int length, PrimitiveRuuviMeasurement m, int fields) {
+        int o = offset + 2; // skip the first 2 bytes, the company identifier
+        if (requested(fields, MeasurementField.TEMPERATURE) && !ByteUtils.isMinSignedShort(data[o + 1], data[o + 2])) {
+            m.setTemperature((data[o + 1] << 8 | data[o + 2] & 0xFF) / 200d);
         }
 
-        if (!ByteUtils.isMaxUnsignedShort(data[3], data[4])) {
-            m.setHumidity(((data[3] & 0xFF) << 8 | data[4] & 0xFF) / 400d);
+        if (requested(fields, MeasurementField.HUMIDITY) && !ByteUtils.isMaxUnsignedShort(data[o + 3], data[o + 4])) {
+            m.setHumidity(((data[o + 3] & 0xFF) << 8 | data[o + 4] & 0xFF) / 400d);
         }
 
-        if (!ByteUtils.isMaxUnsignedShort(data[5], data[6])) {
-            m.setPressure((double) ((data[5] & 0xFF) << 8 | data[6] & 0xFF) + 50000);
+        if (requested(fields, MeasurementField.PRESSURE) && !ByteUtils.isMaxUnsignedShort(data[o + 5], data[o + 6])) {
+            m.setPressure((double) ((data[o + 5] & 0xFF) << 8 | data[o + 6] & 0xFF) + 50000);
         }
 
-        if (!ByteUtils.isMinSignedShort(data[7], data[8])) {
-            m.setAccelerationX((data[7] << 8 | data[8] & 0xFF) / 1000d);
+        if (requested(fields, MeasurementField.ACCELERATION_X) && !ByteUtils.isMinSignedShort(data[o + 7], data[o + 8])) {
+            m.setAccelerationX((data[o + 7] << 8 | data[o + 8] & 0xFF) / 1000d);
         }
-        if (!ByteUtils.isMinSignedShort(data[9], data[10])) {
-            m.setAccelerationY((data[9] << 8 | data[10] & 0xFF) / 1000d);
+        if (requested(fields, MeasurementField.ACCELERATION_Y) && !ByteUtils.isMinSignedShort(data[o + 9], data[o + 10])) {
+            m.setAccelerationY((data[o + 9] << 8 | data[o + 10] & 0xFF) / 1000d);
         }
-        if (!ByteUtils.isMinSignedShort(data[11], data[12])) {
-            m.setAccelerationZ((data[11] << 8 | data[12] & 0xFF) / 1000d);
+        if (requested(fields, MeasurementField.ACCELERATION_Z) && !ByteUtils.isMinSignedShort(data[o + 11], data[o + 12])) {
+            m.setAccelerationZ((data[o + 11] << 8 | data[o + 12] & 0xFF) / 1000d);
         }
 
-        int powerInfo = (data[13] & 0xFF) << 8 | data[14] & 0xFF;
-        if ((powerInfo >>> 5) != 0b11111111111) {
-            m.setBatteryVoltage((powerInfo >>> 5) / 1000d + 1.6d);
-        }
-        if ((powerInfo & 0b11111) != 0b11111) {
-            m.setTxPower((Integer) (powerInfo & 0b11111) * 2 - 40);
+        if (requested(fields, MeasurementField.BATTERY_VOLTAGE) || requested(fields, MeasurementField.TX_POWER)) {
+            int powerInfo = (data[o + 13] & 0xFF) << 8 | data[o + 14] & 0xFF;
+            if (requested(fields, MeasurementField.BATTERY_VOLTAGE) && (powerInfo >>> 5) != 0b11111111111) {
+                m.setBatteryVoltage((powerInfo >>> 5) / 1000d + 1.6d);
+            }
+            if (requested(fields, MeasurementField.TX_POWER) && (powerInfo & 0b11111) != 0b11111) {
+                m.setTxPower((powerInfo & 0b11111) * 2 - 40);
+            }
         }
 
-        if (!ByteUtils.isMaxUnsignedByte(data[15])) {
-            m.setMovementCounter(data[15] & 0xFF);
+        if (requested(fields, MeasurementField.MOVEMENT_COUNTER) && !ByteUtils.isMaxUnsignedByte(data[o + 15])) {
+            m.setMovementCounter(data[o + 15] & 0xFF);
         }
-        if (!ByteUtils.isMaxUnsignedShort(data[16], data[17])) {
-            m.setMeasurementSequenceNumber((Integer) (data[16] & 0xFF) << 8 | data[17] & 0xFF);
+        if (requested(fields, MeasurementField.MEASUREMENT_SEQUENCE_NUMBER) && !ByteUtils.isMaxUnsignedShort(data[o + 16], data[o + 17])) {
+            m.setMeasurementSequenceNumber((data[o + 16] & 0xFF) << 8 | data[o + 17] & 0xFF);
         }
 
-        return m;
+        if (requested(fields, MeasurementField.MAC)) {
+            long mac = readMac(data, o + 18);
+            if (mac != NOT_AVAILABLE_MAC) {
+                m.setMac(mac);
+            }
+        }
     }
 }
@@ -1,89 +1,122 @@
 package fi.tkgwf.ruuvi.common.parser.impl;
 
-import java.util.Arrays;
-
-import fi.tkgwf.ruuvi.common.bean.RuuviMeasurement;
-import fi.tkgwf.ruuvi.common.parser.DataFormatParser;
+import fi.tkgwf.ruuvi.common.bean.MeasurementField;
+import fi.tkgwf.ruuvi.common.bean.PrimitiveRuuviMeasurement;
+import fi.tkgwf.ruuvi.common.parser.ParseStatus;
+import fi.tkgwf.ruuvi.common.utils.ByteLookupTable;
 import fi.tkgwf.ruuvi.common.utils.ByteUtils;
+import java.util.Set;
 
-public class DataFormat6Parser implements DataFormatParser {
+public class DataFormat6Parser extends AbstractDataFormatParser {
 
     private final int[] RUUVI_COMPANY_IDENTIFIER = { 0x99, 0x04 }; // 0x0499
 
+    /**
+     * Decoded values of the 8-bit logarithmic luminosity code
+     */
+    static final ByteLookupTable LUMINOSITY = ByteLookupTable.of(code -> Math.exp(code * (Math.log(65536d) / 254d)) - 1);
+
+    public DataFormat6Parser() {
+    }
+
+    /**
+     * Creates a parser which decodes only the given fields
+     *
+     * @param fields the fields to decode
+     */
+    public DataFormat6Parser(Set<MeasurementField> fields) {
+        super(fields);
+    }
+
     @Override
-    public RuuviMeasurement parse(byte[] data) {
-        if (data.length < 2 || (data[0] & 0xFF) != RUUVI_COMPANY_IDENTIFIER[0]
-                || (data[1] & 0xFF) != RUUVI_COMPANY_IDENTIFIER[1]) {
-            return null;
+    ParseStatus parse(byte[] data, int offset, int length, PrimitiveRuuviMeasurement m, int fields) {
+        if (length < 2 || (data[offset] & 0xFF) != RUUVI_COMPANY_IDENTIFIER[0]
+                || (data[offset + 1] & 0xFF) != RUUVI_COMPANY_IDENTIFIER[1]) {
+            return ParseStatus.NOT_RUUVI;
+        }
+        int o = offset + 2; // skip the first 2 bytes, the company identifier
+
+        if (length - 2 < 1) {
+            return ParseStatus.TRUNCATED; // no data format byte
         }
-        data = Arrays.copyOfRange(data, 2, data.length); // discard the first 2 bytes, the company identifier
-        if (data.length < 20 || data[0] != 6) {
-            return null;
+        if (data[o] != 6) {
+            return ParseStatus.UNKNOWN_FORMAT;
         }
-        RuuviMeasurement m = new RuuviMeasurement();
-        m.setDataFormat(data[0] & 0xFF);
+        if (length - 2 < 20) {
+            return ParseStatus.TRUNCATED;
+        }
+        m.reset(data[o] & 0xFF);
+        decode(data, offset, length, m, fields);
+        return ParseStatus.OK;
+    }
+
+    @Override
+    void decode(byte[] data, int offset, int length, PrimitiveRuuviMeasurement m, int fields) {
+        int o = offset + 2; // skip the first 2 bytes, the company identifier
 
         // Temperature: bytes 1-2, signed 16-bit, 0.005°C resolution, 0x8000 = invalid
         // Range: -163.835°C to +163.835°C
         // Example: 0x0E38 = 3640 * 0.005 = 18.200°C
-        if (!ByteUtils.isMinSignedShort(data[1], data[2])) {
-            m.setTemperature((data[1] << 8 | data[2] & 0xFF) / 200d);
+        if (requested(fields, MeasurementField.TEMPERATURE) && !ByteUtils.isMinSignedShort(data[o + 1], data[o + 2])) {
+            m.setTemperature((data[o + 1] << 8 | data[o + 2] & 0xFF) / 200d);
         }
 
         // Humidity: bytes 3-4, unsigned 16-bit, 0.0025% resolution, 0xFFFF = invalid
         // Range: 0% to 100% (values >100 indicate sensor error)
         // Example: 0x6F30 = 28464 * 0.0025 = 71.160%
-        if (!ByteUtils.isMaxUnsignedShort(data[3], data[4])) {
-            m.setHumidity(((data[3] & 0xFF) << 8 | data[4] & 0xFF) / 400d);
+        if (requested(fields, MeasurementField.HUMIDITY) && !ByteUtils.isMaxUnsignedShort(data[o + 3], data[o + 4])) {
+            m.setHumidity(((data[o + 3] & 0xFF) << 8 | data[o + 4] & 0xFF) / 400d);
         }
 
         // Pressure: bytes 5-6, unsigned 16-bit, 1 Pa resolution, 0xFFFF = invalid
         // Range: 50000 Pa to 115534 Pa (500-1155.34 hPa)
         // Example: 0xC7A8 = 51112 + 50000 = 101112 Pa (1011.12 hPa)
-        if (!ByteUtils.isMaxUnsignedShort(data[5], data[6])) {
-            m.setPressure((double) ((data[5] & 0xFF) << 8 | data[6] & 0xFF) + 50000);
+        if (requested(fields, MeasurementField.PRESSURE) && !ByteUtils.isMaxUnsignedShort(data[o + 5], data[o + 6])) {
+            m.setPressure((double) ((data[o + 5] & 0xFF) << 8 | data[o + 6] & 0xFF) + 50000);
         }
 
         // PM2.5: bytes 7-8, unsigned 16-bit, 0.1 μg/m³ resolution, 0xFFFF = invalid
         // Range: 0 to 6553.4 μg/m³ (sensor limited to 1000 μg/m³)
         // Example: 0x0064 = 100 * 0.1 = 10.0 μg/m³
-        if (!ByteUtils.isMaxUnsignedShort(data[7], data[8])) {
-            m.setPm25(((data[7] & 0xFF) << 8 | data[8] & 0xFF) / 10d);
+        if (requested(fields, MeasurementField.PM25) && !ByteUtils.isMaxUnsignedShort(data[o + 7], data[o + 8])) {
+            m.setPm25(((data[o + 7] & 0xFF) << 8 | data[o + 8] & 0xFF) / 10d);
         }
 
         // CO2: bytes 9-10, unsigned 16-bit, 1 ppm resolution, 0xFFFF = invalid
         // Range: 0 to 40000 ppm (ambient typically 400-2000 ppm)
         // Example: 0x03E8 = 1000 ppm
-        if (!ByteUtils.isMaxUnsignedShort(data[9], data[10])) {
-            m.setCo2((data[9] & 0xFF) << 8 | data[10] & 0xFF);
+        if (requested(fields, MeasurementField.CO2) && !ByteUtils.isMaxUnsignedShort(data[o + 9], data[o + 10])) {
+            m.setCo2((data[o + 9] & 0xFF) << 8 | data[o + 10] & 0xFF);
         }
 
         // VOC index: 9-bit value combining byte 11 (8 bits) and bit 6 of byte 16 (1 bit)
         // The 8 bits from byte 11 are shifted left by 1 to make room for the 9th bit from flags
         // 511 (0x1FF) is the reserved value indicating invalid/not available
         // See: https://docs.ruuvi.com/communication/bluetooth-advertisements/data-format-6#flags
-        int vocIndex = ((data[11] & 0xFF) << 1) | ((data[16] >> 6) & 0x01);
-        if (vocIndex != 511) {
-            m.setVocIndex(vocIndex);
+        if (requested(fields, MeasurementField.VOC_INDEX)) {
+            int vocIndex = ((data[o + 11] & 0xFF) << 1) | ((data[o + 16] >> 6) & 0x01);
+            if (vocIndex != 511) {
+                m.setVocIndex(vocIndex);
+            }
         }
 
         // NOx index: 9-bit value combining byte 12 (8 bits) and bit 7 of byte 16 (1 bit)
         // The 8 bits from byte 12 are shifted left by 1 to make room for the 9th bit from flags
         // 511 (0x1FF) is the reserved value indicating invalid/not available
         // See: https://docs.ruuvi.com/communication/bluetooth-advertisements/data-format-6#flags
-        int noxIndex = ((data[12] & 0xFF) << 1) | ((data[16] >> 7) & 0x01);
-        if (noxIndex != 511) {
-            m.setNoxIndex(noxIndex);
+        if (requested(fields, MeasurementField.NOX_INDEX)) {
+            int noxIndex = ((data[o + 12] & 0xFF) << 1) | ((data[o + 16] >> 7) & 0x01);
+            if (noxIndex != 511) {
+                m.setNoxIndex(noxIndex);
+            }
         }
 
         // Luminosity: byte 13, 8-bit logarithmic encoding, 255 = invalid
         // Range: 0-65535 lux (logarithmic scale)
-        // Formula: exp(CODE * (ln(65536)/254)) - 1
+        // Formula: exp(CODE * (ln(65536)/254)) - 1, precomputed for every code
         // Example: 0x80 = 244.06 lux
-        if (!ByteUtils.isMaxUnsignedByte(data[13])) {
-            double delta = Math.log(65536d) / 254d;
-            double luminosity = Math.exp((data[13] & 0xFF) * delta) - 1;
-            m.setLuminosity(luminosity);
+        if (requested(fields, MeasurementField.LUMINOSITY) && !ByteUtils.isMaxUnsignedByte(data[o + 13])) {
+            m.setLuminosity(LUMINOSITY.get(data[o + 13]));
         }
 
         // Measurement sequence: byte 15, 8-bit counter
@@ -91,15 +124,17 @@ public class DataFormat6Parser implements DataFormatParser {
         // as this counter tracks the E1 format counter.
         // Used to detect packet loss and duplicate transmissions
         // Example: 0x2A = 42 (42nd measurement in sequence)
-        m.setMeasurementSequenceNumber(data[15] & 0xff);
+        if (requested(fields, MeasurementField.MEASUREMENT_SEQUENCE_NUMBER)) {
+            m.setMeasurementSequenceNumber(data[o + 15] & 0xff);
+        }
 
         // Calibration status: bit 0 of byte 16 (flags)
         // Bit 0: 0 = calibration complete, 1 = calibration in progress
         // Other bits: See VOC/NOx index calculations above
         // Example: 0x01 = calibration in progress
-        boolean calibrationInProgress = (data[16] & 0x01) != 0;
-        m.setCalibrationInProgress(calibrationInProgress);
-
-        return m;
+        if (requested(fields, MeasurementField.CALIBRATION_IN_PROGRESS)) {
+            boolean calibrationInProgress = (data[o + 16] & 0x01) != 0;
+            m.setCalibrationInProgress(calibrationInProgress);
+        }
     }
 }
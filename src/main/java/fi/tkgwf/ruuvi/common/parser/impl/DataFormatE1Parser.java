@@ -1,10 +1,10 @@
 package fi.tkgwf.ruuvi.common.parser.impl;
 
-import java.util.Arrays;
-
-import fi.tkgwf.ruuvi.common.bean.RuuviMeasurement;
-import fi.tkgwf.ruuvi.common.parser.DataFormatParser;
+import fi.tkgwf.ruuvi.common.bean.MeasurementField;
+import fi.tkgwf.ruuvi.common.bean.PrimitiveRuuviMeasurement;
+import fi.tkgwf.ruuvi.common.parser.ParseStatus;
 import fi.tkgwf.ruuvi.common.utils.ByteUtils;
+import java.util.Set;
 
 /**
  * Parser for Ruuvi Data Format E1 (Extended v1)
@@ -28,101 +28,142 @@ import fi.tkgwf.ruuvi.common.utils.ByteUtils;
  * Bytes 29-33: Reserved
  * Bytes 34-39: MAC Address (6 bytes)
  */
-public class DataFormatE1Parser implements DataFormatParser {
+public class DataFormatE1Parser extends AbstractDataFormatParser {
 
     private final int[] RUUVI_COMPANY_IDENTIFIER = { 0x99, 0x04 }; // 0x0499
 
+    public DataFormatE1Parser() {
+    }
+
+    /**
+     * Creates a parser which decodes only the given fields
+     *
+     * @param fields the fields to decode
+     */
+    public DataFormatE1Parser(Set<MeasurementField> fields) {
+        super(fields);
+    }
+
     @Override
-    public RuuviMeasurement parse(byte[] data) {
-        if (data.length < 2 || (data[0] & 0xFF) != RUUVI_COMPANY_IDENTIFIER[0]
-                || (data[1] & 0xFF) != RUUVI_COMPANY_IDENTIFIER[1]) {
-            return null;
+    ParseStatus parse(byte[] data, int offset, int length, PrimitiveRuuviMeasurement m, int fields) {
+        if (length < 2 || (data[offset] & 0xFF) != RUUVI_COMPANY_IDENTIFIER[0]
+                || (data[offset + 1] & 0xFF) != RUUVI_COMPANY_IDENTIFIER[1]) {
+            return ParseStatus.NOT_RUUVI;
+        }
+        int o = offset + 2; // skip the first 2 bytes, the company identifier
+
+        if (length - 2 < 1) {
+            return ParseStatus.TRUNCATED; // no data format byte
         }
-        data = Arrays.copyOfRange(data, 2, data.length); // discard the first 2 bytes, the company identifier
-        if (data.length < 40 || data[0] != (byte) 0xE1) {
-            return null;
+        if (data[o] != (byte) 0xE1) {
+            return ParseStatus.UNKNOWN_FORMAT;
         }
+        if (length - 2 < 40) {
+            return ParseStatus.TRUNCATED;
+        }
+
+        m.reset((byte) 0xE1 & 0xFF);
+        decode(data, offset, length, m, fields);
+        return ParseStatus.OK;
+    }
 
-        RuuviMeasurement m = new RuuviMeasurement();
-        m.setDataFormat((byte) 0xE1 & 0xFF);
+    @Override
+    void decode(byte[] data, int offset, int length, PrimitiveRuuviMeasurement m, int fields) {
+        int o = offset + 2; // skip the first 2 bytes, the company identifier
 
         // Temperature: bytes 1-2, signed 16-bit, 0.005°C resolution, 0x8000 = invalid
         // Range: -163.835°C to +163.835°C
-        if (!ByteUtils.isMinSignedShort(data[1], data[2])) {
-            m.setTemperature((data[1] << 8 | data[2] & 0xFF) / 200d);
+        if (requested(fields, MeasurementField.TEMPERATURE) && !ByteUtils.isMinSignedShort(data[o + 1], data[o + 2])) {
+            m.setTemperature((data[o + 1] << 8 | data[o + 2] & 0xFF) / 200d);
         }
 
         // Humidity: bytes 3-4, unsigned 16-bit, 0.0025% resolution, 0xFFFF = invalid
         // Range: 0% to 100% (values >100 indicate sensor error)
-        if (!ByteUtils.isMaxUnsignedShort(data[3], data[4])) {
-            m.setHumidity(((data[3] & 0xFF) << 8 | data[4] & 0xFF) / 400d);
+        if (requested(fields, MeasurementField.HUMIDITY) && !ByteUtils.isMaxUnsignedShort(data[o + 3], data[o + 4])) {
+            m.setHumidity(((data[o + 3] & 0xFF) << 8 | data[o + 4] & 0xFF) / 400d);
         }
 
         // Pressure: bytes 5-6, unsigned 16-bit, 1 Pa resolution, 0xFFFF = invalid
         // Range: 50000 Pa to 115534 Pa (500-1155.34 hPa)
-        if (!ByteUtils.isMaxUnsignedShort(data[5], data[6])) {
-            m.setPressure((double) ((data[5] & 0xFF) << 8 | data[6] & 0xFF) + 50000);
+        if (requested(fields, MeasurementField.PRESSURE) && !ByteUtils.isMaxUnsignedShort(data[o + 5], data[o + 6])) {
+            m.setPressure((double) ((data[o + 5] & 0xFF) << 8 | data[o + 6] & 0xFF) + 50000);
         }
 
         // PM1.0: bytes 7-8, unsigned 16-bit, 0.1 μg/m³ resolution, 0xFFFF = invalid
-        if (!ByteUtils.isMaxUnsignedShort(data[7], data[8])) {
-            m.setPm1(((data[7] & 0xFF) << 8 | data[8] & 0xFF) / 10d);
+        if (requested(fields, MeasurementField.PM1) && !ByteUtils.isMaxUnsignedShort(data[o + 7], data[o + 8])) {
+            m.setPm1(((data[o + 7] & 0xFF) << 8 | data[o + 8] & 0xFF) / 10d);
         }
 
         // PM2.5: bytes 9-10, unsigned 16-bit, 0.1 μg/m³ resolution, 0xFFFF = invalid
-        if (!ByteUtils.isMaxUnsignedShort(data[9], data[10])) {
-            m.setPm25(((data[9] & 0xFF) << 8 | data[10] & 0xFF) / 10d);
+        if (requested(fields, MeasurementField.PM25) && !ByteUtils.isMaxUnsignedShort(data[o + 9], data[o + 10])) {
+            m.setPm25(((data[o + 9] & 0xFF) << 8 | data[o + 10] & 0xFF) / 10d);
         }
 
         // PM4.0: bytes 11-12, unsigned 16-bit, 0.1 μg/m³ resolution, 0xFFFF = invalid
-        if (!ByteUtils.isMaxUnsignedShort(data[11], data[12])) {
-            m.setPm4(((data[11] & 0xFF) << 8 | data[12] & 0xFF) / 10d);
+        if (requested(fields, MeasurementField.PM4) && !ByteUtils.isMaxUnsignedShort(data[o + 11], data[o + 12])) {
+            m.setPm4(((data[o + 11] & 0xFF) << 8 | data[o + 12] & 0xFF) / 10d);
         }
 
         // PM10.0: bytes 13-14, unsigned 16-bit, 0.1 μg/m³ resolution, 0xFFFF = invalid
-        if (!ByteUtils.isMaxUnsignedShort(data[13], data[14])) {
-            m.setPm10(((data[13] & 0xFF) << 8 | data[14] & 0xFF) / 10d);
+        if (requested(fields, MeasurementField.PM10) && !ByteUtils.isMaxUnsignedShort(data[o + 13], data[o + 14])) {
+            m.setPm10(((data[o + 13] & 0xFF) << 8 | data[o + 14] & 0xFF) / 10d);
         }
 
         // CO2: bytes 15-16, unsigned 16-bit, 1 ppm resolution, 0xFFFF = invalid
         // Range: 0 to 40000 ppm
-        if (!ByteUtils.isMaxUnsignedShort(data[15], data[16])) {
-            m.setCo2((data[15] & 0xFF) << 8 | data[16] & 0xFF);
+        if (requested(fields, MeasurementField.CO2) && !ByteUtils.isMaxUnsignedShort(data[o + 15], data[o + 16])) {
+            m.setCo2((data[o + 15] & 0xFF) << 8 | data[o + 16] & 0xFF);
         }
 
         // VOC Index: 9-bit value combining byte 17 (8 bits) and bit 6 of byte 28 (1 bit)
         // The 8 bits from byte 17 are shifted left by 1 to make room for the 9th bit from flags
         // 511 (0x1FF) is the reserved value indicating invalid/not available
-        int vocIndex = ((data[17] & 0xFF) << 1) | ((data[28] >> 6) & 0x01);
-        if (vocIndex != 511) {
-            m.setVocIndex(vocIndex);
+        if (requested(fields, MeasurementField.VOC_INDEX)) {
+            int vocIndex = ((data[o + 17] & 0xFF) << 1) | ((data[o + 28] >> 6) & 0x01);
+            if (vocIndex != 511) {
+                m.setVocIndex(vocIndex);
+            }
         }
 
         // NOx Index: 9-bit value combining byte 18 (8 bits) and bit 7 of byte 28 (1 bit)
         // The 8 bits from byte 18 are shifted left by 1 to make room for the 9th bit from flags
         // 511 (0x1FF) is the reserved value indicating invalid/not available
-        int noxIndex = ((data[18] & 0xFF) << 1) | ((data[28] >> 7) & 0x01);
-        if (noxIndex != 511) {
-            m.setNoxIndex(noxIndex);
+        if (requested(fields, MeasurementField.NOX_INDEX)) {
+            int noxIndex = ((data[o + 18] & 0xFF) << 1) | ((data[o + 28] >> 7) & 0x01);
+            if (noxIndex != 511) {
+                m.setNoxIndex(noxIndex);
+            }
         }
 
         // Luminosity: bytes 19-21, 24-bit big-endian, 0.01 lux resolution
         // 0xFFFFFF = invalid
-        int luminosityRaw = ((data[19] & 0xFF) << 16) | ((data[20] & 0xFF) << 8) | (data[21] & 0xFF);
-        if (luminosityRaw != 0xFFFFFF) {
-            m.setLuminosity(luminosityRaw * 0.01d);
+        if (requested(fields, MeasurementField.LUMINOSITY)) {
+            int luminosityRaw = ((data[o + 19] & 0xFF) << 16) | ((data[o + 20] & 0xFF) << 8) | (data[o + 21] & 0xFF);
+            if (luminosityRaw != 0xFFFFFF) {
+                m.setLuminosity(luminosityRaw * 0.01d);
+            }
         }
 
         // Measurement sequence: bytes 25-27, 24-bit big-endian counter
         // Used to detect packet loss and duplicate transmissions
-        int sequenceNumber = ((data[25] & 0xFF) << 16) | ((data[26] & 0xFF) << 8) | (data[27] & 0xFF);
-        m.setMeasurementSequenceNumber(sequenceNumber);
+        if (requested(fields, MeasurementField.MEASUREMENT_SEQUENCE_NUMBER)) {
+            int sequenceNumber = ((data[o + 25] & 0xFF) << 16) | ((data[o + 26] & 0xFF) << 8) | (data[o + 27] & 0xFF);
+            m.setMeasurementSequenceNumber(sequenceNumber);
+        }
 
         // Calibration status: bit 0 of byte 28 (flags)
         // Bit 0: 0 = calibration complete, 1 = calibration in progress
-        boolean calibrationInProgress = (data[28] & 0x01) != 0;
-        m.setCalibrationInProgress(calibrationInProgress);
+        if (requested(fields, MeasurementField.CALIBRATION_IN_PROGRESS)) {
+            boolean calibrationInProgress = (data[o + 28] & 0x01) != 0;
+            m.setCalibrationInProgress(calibrationInProgress);
+        }
 
-        return m;
+        // MAC address: bytes 34-39, FF:FF:FF:FF:FF:FF = invalid
+        if (requested(fields, MeasurementField.MAC)) {
+            long mac = readMac(data, o + 34);
+            if (mac != NOT_AVAILABLE_MAC) {
+                m.setMac(mac);
+            }
+        }
     }
 }
@@ -0,0 +1,177 @@
+package fi.tkgwf.ruuvi.common.parser.impl;
+
+import fi.tkgwf.ruuvi.common.bean.MeasurementField;
+import fi.tkgwf.ruuvi.common.bean.PrimitiveRuuviMeasurement;
+import fi.tkgwf.ruuvi.common.bean.RuuviMeasurement;
+import fi.tkgwf.ruuvi.common.parser.ParseStatus;
+
+/**
+ * A read-only view over a raw data packet, which decodes a field only when
+ * its getter is called. This is cheaper than a full parse when only a few
+ * fields of each packet are looked at, for example when filtering packets.
+ * The getters have the same names and return the same values as those of
+ * {@link RuuviMeasurement}, use {@link #toRuuviMeasurement()} to get a
+ * regular measurement.
+ * <p>
+ * The packet is validated once when it is wrapped, after which each field is
+ * decoded at most once by the parser of its data format. The raw data is not
+ * copied, so it must not be modified while the view is in use. A view can be
+ * re-pointed to another packet with {@link #wrap(byte[], int, int)}, but is
+ * not thread safe.
+ */
+public class LazyRuuviMeasurement {
+
+    private static final AnyDataFormatParser PARSER = new AnyDataFormatParser();
+
+    private final PrimitiveRuuviMeasurement scratch = new PrimitiveRuuviMeasurement();
+    private AbstractDataFormatParser decoder;
+    private byte[] data;
+    private int offset;
+    private int length;
+    private int decoded;
+
+    /**
+     * Points this view to a raw data packet. The header of the packet is
+     * validated, no fields are decoded.
+     *
+     * @param data the array containing the raw data bytes
+     * @param offset index of the first byte of the raw data
+     * @param length number of raw data bytes
+     * @return true if the data is in a supported data format, false otherwise
+     * in which case every getter returns null
+     */
+    public boolean wrap(byte[] data, int offset, int length) {
+        this.decoded = 0;
+        if (PARSER.parse(data, offset, length, scratch, 0) != ParseStatus.OK) {
+            this.data = null;
+            this.decoder = null;
+            return false;
+        }
+        this.data = data;
+        this.offset = offset;
+        this.length = length;
+        this.decoder = PARSER.decoderFor(data, offset, length);
+        return true;
+    }
+
+    /**
+     * Decodes every field of the wrapped packet into a regular
+     * {@link RuuviMeasurement}
+     *
+     * @return a new {@link RuuviMeasurement}, or null if no valid packet is
+     * wrapped
+     */
+    public RuuviMeasurement toRuuviMeasurement() {
+        if (data == null) {
+            return null;
+        }
+        decode(MeasurementField.ALL);
+        return scratch.toRuuviMeasurement();
+    }
+
+    private boolean decode(MeasurementField field) {
+        if (data == null) {
+            return false;
+        }
+        decode(field.mask());
+        return scratch.has(field);
+    }
+
+    private void decode(int fields) {
+        int missing = fields & ~decoded;
+        if (missing != 0) {
+            decoder.decode(data, offset, length, scratch, missing);
+            decoded |= missing;
+        }
+    }
+
+    public Integer getDataFormat() {
+        return data == null ? null : scratch.getDataFormat();
+    }
+
+    public Double getTemperature() {
+        return decode(MeasurementField.TEMPERATURE) ? scratch.getTemperature() : null;
+    }
+
+    public Double getHumidity() {
+        return decode(MeasurementField.HUMIDITY) ? scratch.getHumidity() : null;
+    }
+
+    public Double getPressure() {
+        return decode(MeasurementField.PRESSURE) ? scratch.getPressure() : null;
+    }
+
+    public Double getAccelerationX() {
+        return decode(MeasurementField.ACCELERATION_X) ? scratch.getAccelerationX() : null;
+    }
+
+    public Double getAccelerationY() {
+        return decode(MeasurementField.ACCELERATION_Y) ? scratch.getAccelerationY() : null;
+    }
+
+    public Double getAccelerationZ() {
+        return decode(MeasurementField.ACCELERATION_Z) ? scratch.getAccelerationZ() : null;
+    }
+
+    public Double getBatteryVoltage() {
+        return decode(MeasurementField.BATTERY_VOLTAGE) ? scratch.getBatteryVoltage() : null;
+    }
+
+    public Integer getTxPower() {
+        return decode(MeasurementField.TX_POWER) ? scratch.getTxPower() : null;
+    }
+
+    public Integer getMovementCounter() {
+        return decode(MeasurementField.MOVEMENT_COUNTER) ? scratch.getMovementCounter() : null;
+    }
+
+    public Integer getMeasurementSequenceNumber() {
+        return decode(MeasurementField.MEASUREMENT_SEQUENCE_NUMBER) ? scratch.getMeasurementSequenceNumber() : null;
+    }
+
+    public Double getPm25() {
+        return decode(MeasurementField.PM25) ? scratch.getPm25() : null;
+    }
+
+    public Integer getCo2() {
+        return decode(MeasurementField.CO2) ? scratch.getCo2() : null;
+    }
+
+    public Integer getVocIndex() {
+        return decode(MeasurementField.VOC_INDEX) ? scratch.getVocIndex() : null;
+    }
+
+    public Integer getNoxIndex() {
+        return decode(MeasurementField.NOX_INDEX) ? scratch.getNoxIndex() : null;
+    }
+
+    public Double getLuminosity() {
+        return decode(MeasurementField.LUMINOSITY) ? scratch.getLuminosity() : null;
+    }
+
+    public Double getPm1() {
+        return decode(MeasurementField.PM1) ? scratch.getPm1() : null;
+    }
+
+    public Double getPm4() {
+        return decode(MeasurementField.PM4) ? scratch.getPm4() : null;
+    }
+
+    public Double getPm10() {
+        return decode(MeasurementField.PM10) ? scratch.getPm10() : null;
+    }
+
+    public Boolean isCalibrationInProgress() {
+        return decode(MeasurementField.CALIBRATION_IN_PROGRESS) ? scratch.isCalibrationInProgress() : null;
+    }
+
+    public Long getMac() {
+        return decode(MeasurementField.MAC) ? scratch.getMac() : null;
+    }
+
+    @Override
+    public String toString() {
+        RuuviMeasurement m = toRuuviMeasurement();
+        return m == null ? "LazyRuuviMeasurement()" : m.toString();
+    }
+}
@@ -0,0 +1,68 @@
+package fi.tkgwf.ruuvi.common.parser.impl;
+
+import fi.tkgwf.ruuvi.common.bean.PrimitiveRuuviMeasurement;
+import fi.tkgwf.ruuvi.common.bean.RuuviMeasurement;
+import fi.tkgwf.ruuvi.common.parser.DataFormatParser;
+import fi.tkgwf.ruuvi.common.parser.ParseStatus;
+
+/**
+ * Wraps a parser and records the result and duration of every parse into a
+ * {@link ParserMetrics}. Parsers which are not wrapped are not instrumented in
+ * any way, so the metrics cost nothing unless they are used.
+ * <p>
+ * This class is thread safe if the wrapped parser is, and several parsers may
+ * share the same metrics.
+ */
+public class MeteredDataFormatParser implements DataFormatParser {
+
+    private final DataFormatParser parser;
+    private final ParserMetrics metrics;
+
+    /**
+     * Creates a metered parser for every supported data format
+     *
+     * @param metrics the metrics to record into
+     */
+    public MeteredDataFormatParser(ParserMetrics metrics) {
+        this(new AnyDataFormatParser(), metrics);
+    }
+
+    /**
+     * Creates a metered parser
+     *
+     * @param parser the parser to wrap
+     * @param metrics the metrics to record into
+     */
+    public MeteredDataFormatParser(DataFormatParser parser, ParserMetrics metrics) {
+        this.parser = parser;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public RuuviMeasurement parse(byte[] data) {
+        return parse(data, 0, data.length);
+    }
+
+    @Override
+    public RuuviMeasurement parse(byte[] data, int offset, int length) {
+        PrimitiveRuuviMeasurement m = new PrimitiveRuuviMeasurement();
+        return parse(data, offset, length, m) == ParseStatus.OK ? m.toRuuviMeasurement() : null;
+    }
+
+    @Override
+    public ParseStatus parse(byte[] data, int offset, int length, PrimitiveRuuviMeasurement measurement) {
+        long start = System.nanoTime();
+        ParseStatus status = parser.parse(data, offset, length, measurement);
+        metrics.record(status, measurement.getDataFormat(), System.nanoTime() - start);
+        return status;
+    }
+
+    /**
+     * Gets the metrics this parser records into
+     *
+     * @return the metrics
+     */
+    public ParserMetrics getMetrics() {
+        return metrics;
+    }
+}
@@ -0,0 +1,173 @@
+package fi.tkgwf.ruuvi.common.parser.impl;
+
+import fi.tkgwf.ruuvi.common.parser.ParseStatus;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters of parsed packets per data format and per {@link ParseStatus},
+ * and a histogram of parse latencies. The counters are striped, so they can be
+ * updated from many threads with little contention, and can be read with
+ * {@link #snapshot()} while packets are still being parsed.
+ * <p>
+ * The latency histogram has {@link #LATENCY_BUCKETS} fixed buckets with power
+ * of two bounds: bucket 0 counts latencies of 0 ns, bucket {@code i} counts
+ * latencies from {@code 2^(i-1)} ns up to but excluding {@code 2^i} ns, and the
+ * last bucket counts every longer latency as well.
+ *
+ * @see MeteredDataFormatParser
+ */
+public class ParserMetrics {
+
+    /**
+     * Number of buckets in the latency histogram
+     */
+    public static final int LATENCY_BUCKETS = 32;
+
+    private static final ParseStatus[] STATUSES = ParseStatus.values();
+
+    private final LongAdder[] dataFormats = newAdders(256);
+    private final LongAdder[] statuses = newAdders(STATUSES.length);
+    private final LongAdder[] latencies = newAdders(LATENCY_BUCKETS);
+
+    /**
+     * Records the result of parsing one packet
+     *
+     * @param status the result of the parse
+     * @param dataFormat the data format of the packet, ignored unless the
+     * status is {@link ParseStatus#OK}
+     * @param nanos time taken to parse the packet in nanoseconds
+     */
+    public void record(ParseStatus status, int dataFormat, long nanos) {
+        statuses[status.ordinal()].increment();
+        if (status == ParseStatus.OK) {
+            dataFormats[dataFormat & 0xFF].increment();
+        }
+        latencies[latencyBucket(nanos)].increment();
+    }
+
+    /**
+     * Reads the current values of every counter. Packets recorded while the
+     * snapshot is being taken may or may not be included.
+     *
+     * @return the current values
+     */
+    public Snapshot snapshot() {
+        return new Snapshot(sums(dataFormats), sums(statuses), sums(latencies));
+    }
+
+    /**
+     * Gets the index of the latency histogram bucket counting the given
+     * latency
+     *
+     * @param nanos latency in nanoseconds
+     * @return index of the bucket
+     */
+    public static int latencyBucket(long nanos) {
+        int bucket = 64 - Long.numberOfLeadingZeros(Math.max(nanos, 0));
+        return Math.min(bucket, LATENCY_BUCKETS - 1);
+    }
+
+    /**
+     * Gets the exclusive upper bound of a latency histogram bucket
+     *
+     * @param bucket index of the bucket
+     * @return the upper bound in nanoseconds, or {@link Long#MAX_VALUE} for
+     * the last bucket
+     */
+    public static long latencyBucketUpperBound(int bucket) {
+        return bucket == LATENCY_BUCKETS - 1 ? Long.MAX_VALUE : 1L << bucket;
+    }
+
+    private static LongAdder[] newAdders(int count) {
+        LongAdder[] adders = new LongAdder[count];
+        for (int i = 0; i < count; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    private static long[] sums(LongAdder[] adders) {
+        long[] sums = new long[adders.length];
+        for (int i = 0; i < adders.length; i++) {
+            sums[i] = adders[i].sum();
+        }
+        return sums;
+    }
+
+    /**
+     * The values of the {@link ParserMetrics} counters at one point in time
+     */
+    public static class Snapshot {
+
+        private final long[] dataFormats;
+        private final long[] statuses;
+        private final long[] latencies;
+
+        private Snapshot(long[] dataFormats, long[] statuses, long[] latencies) {
+            this.dataFormats = dataFormats;
+            this.statuses = statuses;
+            this.latencies = latencies;
+        }
+
+        /**
+         * Gets the number of packets of the given data format that were parsed
+         * successfully
+         *
+         * @param dataFormat the data format
+         * @return number of parsed packets
+         */
+        public long getCount(int dataFormat) {
+            return dataFormats[dataFormat & 0xFF];
+        }
+
+        /**
+         * Gets the number of packets that resulted in the given status
+         *
+         * @param status the status
+         * @return number of packets
+         */
+        public long getCount(ParseStatus status) {
+            return statuses[status.ordinal()];
+        }
+
+        /**
+         * Gets the total number of packets, whether parsed successfully or not
+         *
+         * @return number of packets
+         */
+        public long getTotal() {
+            long total = 0;
+            for (long count : statuses) {
+                total += count;
+            }
+            return total;
+        }
+
+        /**
+         * Gets the latency histogram, see {@link ParserMetrics} for the bucket
+         * bounds
+         *
+         * @return a copy of the number of packets in each bucket
+         */
+        public long[] getLatencyHistogram() {
+            return latencies.clone();
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder("ParserMetrics.Snapshot{");
+            for (ParseStatus status : STATUSES) {
+                sb.append(status).append('=').append(statuses[status.ordinal()]).append(", ");
+            }
+            sb.append("dataFormats={");
+            boolean first = true;
+            for (int i = 0; i < dataFormats.length; i++) {
+                if (dataFormats[i] != 0) {
+                    sb.append(first ? "" : ", ").append(i).append('=').append(dataFormats[i]);
+                    first = false;
+                }
+            }
+            return sb.append("}}").toString();
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package fi.tkgwf.ruuvi.common.tracking;
+
+import fi.tkgwf.ruuvi.common.bean.PrimitiveRuuviMeasurement;
+import fi.tkgwf.ruuvi.common.parser.DataFormatParser;
+import fi.tkgwf.ruuvi.common.parser.ParseStatus;
+import fi.tkgwf.ruuvi.common.parser.impl.AnyDataFormatParser;
+import fi.tkgwf.ruuvi.common.utils.LongObjectMap;
+
+/**
+ * Remembers the last raw data packet of every tag and the measurement parsed
+ * from it, so that packets identical to the previous one from the same tag
+ * are answered from the cache instead of being parsed again. Consecutive
+ * broadcasts of a tag are usually identical until the next measurement is
+ * taken, also in the data formats which have no sequence number.
+ * <p>
+ * The bytes of the last packet are kept and compared in full, which costs
+ * the same single pass over the packet as hashing it would and cannot
+ * mistake a changed packet for a repeat. Only packets parsed successfully are
+ * cached.
+ * <p>
+ * This class is not thread safe.
+ */
+public class RawFrameCache {
+
+    private final DataFormatParser parser;
+    private final LongObjectMap<Frame> frames;
+    private boolean repeat;
+
+    /**
+     * Creates a cache parsing every supported data format
+     */
+    public RawFrameCache() {
+        this(new AnyDataFormatParser(), 16);
+    }
+
+    /**
+     * Creates a cache using the given parser, which can track the given
+     * number of tags without growing
+     *
+     * @param parser the parser to parse new packets with
+     * @param expectedTags the expected number of tags
+     */
+    public RawFrameCache(DataFormatParser parser, int expectedTags) {
+        this.parser = parser;
+        this.frames = new LongObjectMap<>(expectedTags);
+    }
+
+    /**
+     * Parses a raw data packet of a tag, unless it is identical to the last
+     * packet parsed from that tag, in which case the cached measurement is
+     * copied instead. Use {@link #wasRepeat()} to find out which happened.
+     *
+     * @param mac the MAC address of the tag, such as the address of the
+     * advertising report
+     * @param data the array containing the raw data bytes
+     * @param offset index of the first byte of the raw data
+     * @param length number of raw data bytes
+     * @param measurement the measurement to fill, left untouched if the
+     * packet cannot be parsed
+     * @return {@link ParseStatus#OK} if the packet was parsed or repeated,
+     * otherwise the reason why the packet cannot be parsed
+     */
+    public ParseStatus parse(long mac, byte[] data, int offset, int length, PrimitiveRuuviMeasurement measurement) {
+        Frame frame = frames.get(mac);
+        if (frame != null && frame.matches(data, offset, length)) {
+            repeat = true;
+            measurement.copyFrom(frame.measurement);
+            return ParseStatus.OK;
+        }
+        repeat = false;
+        ParseStatus status = parser.parse(data, offset, length, measurement);
+        if (status == ParseStatus.OK) {
+            if (frame == null) {
+                frame = new Frame();
+                frames.put(mac, frame);
+            }
+            frame.store(data, offset, length, measurement);
+        }
+        return status;
+    }
+
+    /**
+     * Checks whether a raw data packet is identical to the last packet parsed
+     * from the same tag, without parsing or caching it
+     *
+     * @param mac the MAC address of the tag
+     * @param data the array containing the raw data bytes
+     * @param offset index of the first byte of the raw data
+     * @param length number of raw data bytes
+     * @return true if the packet repeats the last packet of the tag
+     */
+    public boolean isRepeat(long mac, byte[] data, int offset, int length) {
+        Frame frame = frames.get(mac);
+        return frame != null && frame.matches(data, offset, length);
+    }
+
+    /**
+     * Checks whether the last call to
+     * {@link #parse(long, byte[], int, int, PrimitiveRuuviMeasurement)} was
+     * answered from the cache, meaning that the measurement has not changed
+     * and need not be published again
+     *
+     * @return true if the last packet repeated the previous packet of its tag
+     */
+    public boolean wasRepeat() {
+        return repeat;
+    }
+
+    /**
+     * Forgets the last packet of a tag
+     *
+     * @param mac the MAC address of the tag
+     */
+    public void forget(long mac) {
+        frames.remove(mac);
+    }
+
+    /**
+     * Forgets every packet
+     */
+    public void clear() {
+        frames.clear();
+    }
+
+    private static final class Frame {
+
+        final PrimitiveRuuviMeasurement measurement = new PrimitiveRuuviMeasurement();
+        byte[] bytes = new byte[0];
+        int length;
+
+        boolean matches(byte[] data, int offset, int length) {
+            if (length != this.length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (bytes[i] != data[offset + i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        void store(byte[] data, int offset, int length, PrimitiveRuuviMeasurement m) {
+            if (bytes.length < length) {
+                bytes = new byte[length];
+            }
+            System.arraycopy(data, offset, bytes, 0, length);
+            this.length = length;
+            measurement.copyFrom(m);
+        }
+    }
+}
@@ -0,0 +1,301 @@
+package fi.tkgwf.ruuvi.common.tracking;
+
+import fi.tkgwf.ruuvi.common.bean.MeasurementField;
+import fi.tkgwf.ruuvi.common.bean.PrimitiveRuuviMeasurement;
+import fi.tkgwf.ruuvi.common.bluetooth.MeasurementListener;
+import fi.tkgwf.ruuvi.common.utils.LongObjectMap;
+import java.util.Arrays;
+
+/**
+ * Tracks how well the broadcasts of every tag are received, based on the
+ * measurement sequence numbers. Each tag and data format is tracked
+ * separately, using a constant amount of memory.
+ * <p>
+ * A measurement with a sequence number ahead of the highest seen so far is
+ * received, and the sequence numbers skipped are counted as lost. A sequence
+ * number seen before is a duplicate. A sequence number skipped earlier which
+ * arrives late, within {@value #WINDOW} measurements, is moved from lost to
+ * received. A sequence number further behind is taken to mean that the tag
+ * has restarted its counter, which is counted as a restart without any loss.
+ * Measurements older than the first one recorded, or the first one after a
+ * restart, are counted as duplicates.
+ * <p>
+ * The gap histogram has {@link #GAP_BUCKETS} fixed buckets with power of two
+ * bounds: bucket {@code i} counts gaps of {@code 2^i} up to but excluding
+ * {@code 2^(i+1)} consecutive lost measurements, and the last bucket counts
+ * every longer gap as well. Gaps are recorded when detected and are not
+ * corrected for measurements which arrive late.
+ * <p>
+ * Measurements of data formats without a sequence number are ignored. This
+ * class is not thread safe.
+ */
+public class ReceptionTracker implements MeasurementListener {
+
+    /**
+     * The number of buckets in the gap histogram
+     */
+    public static final int GAP_BUCKETS = 16;
+
+    /**
+     * The number of sequence numbers remembered per tag and data format for
+     * detecting duplicates and late arrivals
+     */
+    public static final int WINDOW = SequenceWindow.SIZE;
+
+    private final LongObjectMap<State> states;
+
+    /**
+     * Creates a tracker
+     */
+    public ReceptionTracker() {
+        this(16);
+    }
+
+    /**
+     * Creates a tracker which can track the given number of tags without
+     * growing
+     *
+     * @param expectedTags the expected number of tags
+     */
+    public ReceptionTracker(int expectedTags) {
+        states = new LongObjectMap<>(expectedTags);
+    }
+
+    /**
+     * Records the reception of a measurement
+     *
+     * @param mac the MAC address of the tag, in the lowest 48 bits
+     * @param dataFormat the data format of the measurement
+     * @param sequenceNumber the measurement sequence number
+     * @return false if the measurement is a duplicate or the data format has
+     * no sequence number, true otherwise
+     */
+    public boolean record(long mac, int dataFormat, int sequenceNumber) {
+        int bits = SequenceNumbers.bits(dataFormat);
+        if (bits == 0) {
+            return false;
+        }
+        long key = SequenceWindow.key(mac, dataFormat);
+        State state = states.get(key);
+        if (state == null) {
+            states.put(key, new State(sequenceNumber));
+            return true;
+        }
+        int d = state.window.record(sequenceNumber, bits);
+        switch (d) {
+            case SequenceWindow.DUPLICATE:
+                state.duplicates++;
+                return false;
+            case SequenceWindow.LATE:
+                state.lost--; // it was counted as lost
+                break;
+            case SequenceWindow.RESTART:
+                state.restarts++;
+                break;
+            default:
+                if (d > 1) {
+                    state.lost += d - 1;
+                    state.gaps[gapBucket(d - 1)]++;
+                }
+        }
+        state.received++;
+        return true;
+    }
+
+    /**
+     * Records the reception of a parsed measurement. The tag is identified by
+     * the MAC address in the measurement.
+     *
+     * @param m the measurement
+     * @return false if the measurement is a duplicate or does not have a MAC
+     * address and a sequence number, true otherwise
+     */
+    public boolean record(PrimitiveRuuviMeasurement m) {
+        if (!m.has(MeasurementField.MAC) || !m.has(MeasurementField.MEASUREMENT_SEQUENCE_NUMBER)) {
+            return false;
+        }
+        return record(m.getMac(), m.getDataFormat(), m.getMeasurementSequenceNumber());
+    }
+
+    /**
+     * Records the reception of a measurement, identifying the tag by the
+     * address of the advertising report
+     */
+    @Override
+    public void onMeasurement(long mac, int rssi, PrimitiveRuuviMeasurement m) {
+        if (m.has(MeasurementField.MEASUREMENT_SEQUENCE_NUMBER)) {
+            record(mac, m.getDataFormat(), m.getMeasurementSequenceNumber());
+        }
+    }
+
+    /**
+     * Gets the statistics of a tag
+     *
+     * @param mac the MAC address of the tag
+     * @param dataFormat the data format of the measurements
+     * @return a copy of the current statistics, or null if no measurements of
+     * the data format have been recorded for the tag
+     */
+    public Statistics getStatistics(long mac, int dataFormat) {
+        State state = states.get(SequenceWindow.key(mac, dataFormat));
+        return state == null ? null : new Statistics(state);
+    }
+
+    /**
+     * Calls the visitor with the statistics of every tracked tag and data
+     * format, in no particular order
+     *
+     * @param visitor the visitor to call
+     */
+    public void forEach(Visitor visitor) {
+        states.forEach((key, state) -> visitor.visit(key & 0xFFFFFFFFFFFFL, (int) (key >>> 48), new Statistics(state)));
+    }
+
+    /**
+     * Forgets the statistics of a tag
+     *
+     * @param mac the MAC address of the tag
+     * @param dataFormat the data format of the measurements
+     */
+    public void forget(long mac, int dataFormat) {
+        states.remove(SequenceWindow.key(mac, dataFormat));
+    }
+
+    /**
+     * Forgets the statistics of every tag
+     */
+    public void clear() {
+        states.clear();
+    }
+
+    /**
+     * Gets the gap histogram bucket of a gap
+     *
+     * @param lost the number of consecutive lost measurements, at least 1
+     * @return the index of the bucket counting the gap
+     */
+    public static int gapBucket(int lost) {
+        return Math.min(31 - Integer.numberOfLeadingZeros(lost), GAP_BUCKETS - 1);
+    }
+
+    private static final class State {
+
+        final SequenceWindow window;
+        final long[] gaps = new long[GAP_BUCKETS];
+        long received = 1;
+        long lost;
+        long duplicates;
+        long restarts;
+
+        State(int first) {
+            this.window = new SequenceWindow(first);
+        }
+    }
+
+    /**
+     * The reception statistics of a tag at one point in time
+     */
+    public static final class Statistics {
+
+        private final long received;
+        private final long lost;
+        private final long duplicates;
+        private final long restarts;
+        private final long[] gaps;
+
+        private Statistics(State state) {
+            this.received = state.received;
+            this.lost = state.lost;
+            this.duplicates = state.duplicates;
+            this.restarts = state.restarts;
+            this.gaps = state.gaps.clone();
+        }
+
+        /**
+         * Gets the number of distinct measurements received
+         *
+         * @return the number of measurements received
+         */
+        public long getReceived() {
+            return received;
+        }
+
+        /**
+         * Gets the number of measurements which should have been received,
+         * which is the number received plus the number lost
+         *
+         * @return the number of measurements expected
+         */
+        public long getExpected() {
+            return received + lost;
+        }
+
+        /**
+         * Gets the number of measurements which were skipped by the sequence
+         * numbers received
+         *
+         * @return the number of measurements lost
+         */
+        public long getLost() {
+            return lost;
+        }
+
+        /**
+         * Gets the number of repeated broadcasts of measurements already
+         * received
+         *
+         * @return the number of duplicates
+         */
+        public long getDuplicates() {
+            return duplicates;
+        }
+
+        /**
+         * Gets the number of times the tag has restarted its sequence counter
+         *
+         * @return the number of restarts
+         */
+        public long getRestarts() {
+            return restarts;
+        }
+
+        /**
+         * Gets the fraction of the expected measurements which were received
+         *
+         * @return a value between 0 and 1
+         */
+        public double getReceptionRatio() {
+            return (double) received / getExpected();
+        }
+
+        /**
+         * Gets the gap histogram, see {@link ReceptionTracker#gapBucket(int)}
+         *
+         * @return the number of gaps in each bucket
+         */
+        public long[] getGapHistogram() {
+            return gaps.clone();
+        }
+
+        @Override
+        public String toString() {
+            return "Statistics{" + "received=" + received + ", lost=" + lost + ", duplicates=" + duplicates
+                    + ", restarts=" + restarts + ", gaps=" + Arrays.toString(gaps) + '}';
+        }
+    }
+
+    /**
+     * Receives the statistics of a {@link ReceptionTracker}
+     */
+    public interface Visitor {
+
+        /**
+         * Called for every tracked tag and data format
+         *
+         * @param mac the MAC address of the tag
+         * @param dataFormat the data format of the measurements
+         * @param statistics the statistics of the tag
+         */
+        void visit(long mac, int dataFormat, Statistics statistics);
+    }
+}
@@ -0,0 +1,134 @@
+package fi.tkgwf.ruuvi.common.tracking;
+
+import fi.tkgwf.ruuvi.common.bean.MeasurementField;
+import fi.tkgwf.ruuvi.common.bean.PrimitiveRuuviMeasurement;
+import fi.tkgwf.ruuvi.common.parser.ParseStatus;
+import fi.tkgwf.ruuvi.common.parser.impl.AnyDataFormatParser;
+import fi.tkgwf.ruuvi.common.utils.LongObjectMap;
+import java.util.EnumSet;
+
+/**
+ * Detects repeated broadcasts of the same measurement using the measurement
+ * sequence number. RuuviTags repeat each measurement several times until the
+ * next one is taken, and a tag may be heard by several gateways, so most
+ * packets received are duplicates.
+ * <p>
+ * For every tag and data format the highest sequence number seen and a bit
+ * mask of the {@value #WINDOW} sequence numbers before it are kept, so
+ * duplicates are detected even when packets arrive slightly out of order. A
+ * sequence number further behind than that is taken to mean that the tag has
+ * restarted its counter. Sequence numbers before the first one seen, or the
+ * first one after a restart, are reported as duplicates. Data formats without
+ * a sequence number are never reported as duplicates.
+ * <p>
+ * This class is not thread safe.
+ */
+public class SequenceDeduplicator {
+
+    /**
+     * The number of sequence numbers remembered per tag and data format
+     */
+    public static final int WINDOW = SequenceWindow.SIZE;
+
+    private static final int[] SEQUENCED_DATA_FORMATS = { 5, 6, 0xE1 };
+
+    private final LongObjectMap<SequenceWindow> states;
+    private final AnyDataFormatParser sequenceParser = new AnyDataFormatParser(
+            EnumSet.of(MeasurementField.MEASUREMENT_SEQUENCE_NUMBER));
+    private final PrimitiveRuuviMeasurement scratch = new PrimitiveRuuviMeasurement();
+
+    /**
+     * Creates a deduplicator
+     */
+    public SequenceDeduplicator() {
+        this(16);
+    }
+
+    /**
+     * Creates a deduplicator which can track the given number of tags without
+     * growing
+     *
+     * @param expectedTags the expected number of tags
+     */
+    public SequenceDeduplicator(int expectedTags) {
+        states = new LongObjectMap<>(expectedTags);
+    }
+
+    /**
+     * Checks whether a measurement has already been seen, and records it as
+     * seen
+     *
+     * @param mac the MAC address of the tag, in the lowest 48 bits
+     * @param dataFormat the data format of the measurement
+     * @param sequenceNumber the measurement sequence number
+     * @return true if the measurement is a duplicate, false if it is new or
+     * the data format has no sequence number
+     */
+    public boolean isDuplicate(long mac, int dataFormat, int sequenceNumber) {
+        int bits = SequenceNumbers.bits(dataFormat);
+        if (bits == 0) {
+            return false;
+        }
+        long key = SequenceWindow.key(mac, dataFormat);
+        SequenceWindow window = states.get(key);
+        if (window == null) {
+            states.put(key, new SequenceWindow(sequenceNumber));
+            return false;
+        }
+        return window.record(sequenceNumber, bits) == SequenceWindow.DUPLICATE;
+    }
+
+    /**
+     * Checks whether a parsed measurement has already been seen, and records
+     * it as seen. The tag is identified by the MAC address in the measurement.
+     *
+     * @param m the measurement
+     * @return true if the measurement is a duplicate, false if it is new or
+     * does not have a MAC address and a sequence number
+     */
+    public boolean isDuplicate(PrimitiveRuuviMeasurement m) {
+        if (!m.has(MeasurementField.MAC) || !m.has(MeasurementField.MEASUREMENT_SEQUENCE_NUMBER)) {
+            return false;
+        }
+        return isDuplicate(m.getMac(), m.getDataFormat(), m.getMeasurementSequenceNumber());
+    }
+
+    /**
+     * Checks whether a raw data packet has already been seen, and records it
+     * as seen. Only the header and the sequence number are decoded, so this is
+     * meant to be called before parsing the whole packet.
+     *
+     * @param mac the MAC address of the tag, such as the address of the
+     * advertising report
+     * @param data the array containing the raw data bytes
+     * @param offset index of the first byte of the raw data
+     * @param length number of raw data bytes
+     * @return true if the packet is a duplicate, false if it is new or does
+     * not have a sequence number
+     */
+    public boolean isDuplicate(long mac, byte[] data, int offset, int length) {
+        if (sequenceParser.parse(data, offset, length, scratch) != ParseStatus.OK
+                || !scratch.has(MeasurementField.MEASUREMENT_SEQUENCE_NUMBER)) {
+            return false;
+        }
+        return isDuplicate(mac, scratch.getDataFormat(), scratch.getMeasurementSequenceNumber());
+    }
+
+    /**
+     * Forgets the sequence numbers seen from a tag
+     *
+     * @param mac the MAC address of the tag
+     */
+    public void forget(long mac) {
+        for (int dataFormat : SEQUENCED_DATA_FORMATS) {
+            states.remove(SequenceWindow.key(mac, dataFormat));
+        }
+    }
+
+    /**
+     * Forgets every sequence number seen
+     */
+    public void clear() {
+        states.clear();
+    }
+}
@@ -0,0 +1,51 @@
+package fi.tkgwf.ruuvi.common.tracking;
+
+/**
+ * Arithmetic on the measurement sequence numbers of the data formats which
+ * broadcast one. The counters have a different width in each data format and
+ * wrap around to zero, so sequence numbers must be compared by their distance
+ * modulo the width of the counter rather than by value.
+ */
+public final class SequenceNumbers {
+
+    private SequenceNumbers() {
+    }
+
+    /**
+     * Gets the width of the measurement sequence counter of a data format
+     *
+     * @param dataFormat the data format
+     * @return the number of bits in the counter: 16 for data format 5, 8 for
+     * data format 6, 24 for data format E1, and 0 for data formats without a
+     * counter
+     */
+    public static int bits(int dataFormat) {
+        switch (dataFormat) {
+            case 5:
+                return 16;
+            case 6:
+                return 8;
+            case 0xE1:
+                return 24;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Calculates how far a sequence number is ahead of a previous one, taking
+     * the wrap around of the counter into account
+     *
+     * @param previous the previous sequence number
+     * @param current the current sequence number
+     * @param bits the width of the counter, see {@link #bits(int)}
+     * @return the number of increments from the previous to the current
+     * sequence number, negative if the current sequence number is behind. The
+     * result is between -2<sup>bits-1</sup>+1 and 2<sup>bits-1</sup>.
+     */
+    public static int distance(int previous, int current, int bits) {
+        int modulus = 1 << bits;
+        int d = (current - previous) & (modulus - 1);
+        return d > modulus >> 1 ? d - modulus : d;
+    }
+}
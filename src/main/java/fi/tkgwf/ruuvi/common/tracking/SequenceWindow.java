@@ -0,0 +1,86 @@
+package fi.tkgwf.ruuvi.common.tracking;
+
+/**
+ * The highest measurement sequence number received from a tag and a bit mask
+ * of the {@value #SIZE} sequence numbers before it, shared by
+ * {@link SequenceDeduplicator} and {@link ReceptionTracker}.
+ * <p>
+ * The sequence numbers before the first one recorded, and before the first one
+ * after a restart, are treated as already seen. A newer measurement has
+ * already been received by then, so an older one is reported as a duplicate
+ * rather than as a late arrival of a measurement that was never counted as
+ * lost.
+ */
+final class SequenceWindow {
+
+    /**
+     * The number of sequence numbers remembered
+     */
+    static final int SIZE = 64;
+
+    /**
+     * Returned by {@link #record(int, int)} for a sequence number seen before
+     */
+    static final int DUPLICATE = 0;
+
+    /**
+     * Returned by {@link #record(int, int)} for a sequence number behind the
+     * highest one, within the window, which has not been seen before
+     */
+    static final int LATE = -1;
+
+    /**
+     * Returned by {@link #record(int, int)} for a sequence number further
+     * behind than the window, which is taken to mean that the tag has
+     * restarted its counter
+     */
+    static final int RESTART = -2;
+
+    private int highest;
+    private long seen = -1L;
+
+    SequenceWindow(int first) {
+        this.highest = first;
+    }
+
+    /**
+     * Records a sequence number as seen
+     *
+     * @param sequenceNumber the measurement sequence number
+     * @param bits the width of the counter, see
+     * {@link SequenceNumbers#bits(int)}
+     * @return how many increments the sequence number is ahead of the highest
+     * one seen before if it is ahead, otherwise {@link #DUPLICATE},
+     * {@link #LATE} or {@link #RESTART}
+     */
+    int record(int sequenceNumber, int bits) {
+        int d = SequenceNumbers.distance(highest, sequenceNumber, bits);
+        if (d > 0) {
+            seen = d >= SIZE ? 1 : seen << d | 1;
+            highest = sequenceNumber;
+            return d;
+        }
+        if (-d < SIZE) {
+            long bit = 1L << -d;
+            if ((seen & bit) != 0) {
+                return DUPLICATE;
+            }
+            seen |= bit;
+            return LATE;
+        }
+        highest = sequenceNumber;
+        seen = -1L;
+        return RESTART;
+    }
+
+    /**
+     * Packs a MAC address and a data format into a map key
+     *
+     * @param mac the MAC address, in the lowest 48 bits
+     * @param dataFormat the data format
+     * @return the key
+     */
+    static long key(long mac, int dataFormat) {
+        return mac & 0xFFFFFFFFFFFFL | (long) dataFormat << 48;
+    }
+}
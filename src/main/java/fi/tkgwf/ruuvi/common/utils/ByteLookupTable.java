@@ -0,0 +1,40 @@
+package fi.tkgwf.ruuvi.common.utils;
+
+import java.util.function.IntToDoubleFunction;
+
+/**
+ * A precomputed decoding of a single byte into a double. Encodings with only
+ * 256 possible values, such as a logarithmic scale, can be decoded with an
+ * array lookup instead of evaluating the formula for every packet.
+ */
+public final class ByteLookupTable {
+
+    private final double[] values = new double[256];
+
+    private ByteLookupTable(IntToDoubleFunction decoder) {
+        for (int i = 0; i < values.length; i++) {
+            values[i] = decoder.applyAsDouble(i);
+        }
+    }
+
+    /**
+     * Creates a table by evaluating a decoding for every byte value
+     *
+     * @param decoder the decoding, called with every unsigned byte value from
+     * 0 to 255
+     * @return a table holding the decoded values
+     */
+    public static ByteLookupTable of(IntToDoubleFunction decoder) {
+        return new ByteLookupTable(decoder);
+    }
+
+    /**
+     * Decodes a byte, as an unsigned value
+     *
+     * @param b the byte to decode
+     * @return the decoded value
+     */
+    public double get(byte b) {
+        return values[b & 0xFF];
+    }
+}
@@ -1,7 +1,23 @@
 package fi.tkgwf.ruuvi.common.utils;
 
+import java.util.Arrays;
+
 public abstract class ByteUtils {
 
+    private static final byte[] HEX_VALUES = new byte[128];
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+    static {
+        Arrays.fill(HEX_VALUES, (byte) -1);
+        for (int i = 0; i < 10; i++) {
+            HEX_VALUES['0' + i] = (byte) i;
+        }
+        for (int i = 0; i < 6; i++) {
+            HEX_VALUES['A' + i] = (byte) (10 + i);
+            HEX_VALUES['a' + i] = (byte) (10 + i);
+        }
+    }
+
     /**
      * Convenience method for checking whether the supplied byte is the max
      * signed byte.
@@ -62,4 +78,118 @@ public abstract class ByteUtils {
     public static boolean isMaxUnsignedShort(byte b1, byte b2) {
         return isMaxUnsignedByte(b1) && isMaxUnsignedByte(b2);
     }
+
+    /**
+     * Gets the value of a hex digit, upper or lower case
+     *
+     * @param c the character to convert
+     * @return the value of the digit, or -1 if the character is not a hex
+     *         digit
+     */
+    public static int hexValue(int c) {
+        return c >= 0 && c < 128 ? HEX_VALUES[c] : -1;
+    }
+
+    /**
+     * Decodes hex characters into a caller supplied array, without creating
+     * intermediate arrays or Strings.
+     *
+     * @param hex the characters to decode
+     * @param start index of the first character to decode
+     * @param end index after the last character to decode
+     * @param dest the array to store the bytes into
+     * @param destOffset index of the first byte to store
+     * @return number of bytes decoded, or -1 if the characters are not valid
+     *         hex, in which case the contents of dest are undefined
+     * @throws IndexOutOfBoundsException if dest cannot hold the bytes
+     */
+    public static int decodeHex(CharSequence hex, int start, int end, byte[] dest, int destOffset) {
+        int length = checkHexLength(start, end, dest, destOffset);
+        if (length < 0) {
+            return -1;
+        }
+        for (int i = 0; i < length; i++) {
+            int high = hexValue(hex.charAt(start + i * 2));
+            int low = hexValue(hex.charAt(start + i * 2 + 1));
+            if ((high | low) < 0) {
+                return -1;
+            }
+            dest[destOffset + i] = (byte) (high << 4 | low);
+        }
+        return length;
+    }
+
+    /**
+     * Decodes hex characters stored as ASCII bytes into a caller supplied
+     * array, without creating intermediate arrays or Strings. The source and
+     * destination may be the same array if destOffset is not greater than
+     * start.
+     *
+     * @param hex the array containing the characters to decode
+     * @param start index of the first character to decode
+     * @param end index after the last character to decode
+     * @param dest the array to store the bytes into
+     * @param destOffset index of the first byte to store
+     * @return number of bytes decoded, or -1 if the characters are not valid
+     *         hex, in which case the contents of dest are undefined
+     * @throws IndexOutOfBoundsException if dest cannot hold the bytes
+     */
+    public static int decodeHex(byte[] hex, int start, int end, byte[] dest, int destOffset) {
+        int length = checkHexLength(start, end, dest, destOffset);
+        if (length < 0) {
+            return -1;
+        }
+        for (int i = 0; i < length; i++) {
+            int high = hexValue(hex[start + i * 2]);
+            int low = hexValue(hex[start + i * 2 + 1]);
+            if ((high | low) < 0) {
+                return -1;
+            }
+            dest[destOffset + i] = (byte) (high << 4 | low);
+        }
+        return length;
+    }
+
+    /**
+     * Decodes a hex string into a new array
+     *
+     * @param hex the characters to decode
+     * @return the bytes, or null if the characters are not valid hex
+     */
+    public static byte[] decodeHex(CharSequence hex) {
+        byte[] bytes = new byte[hex.length() / 2];
+        return decodeHex(hex, 0, hex.length(), bytes, 0) < 0 ? null : bytes;
+    }
+
+    /**
+     * Formats a MAC address in the usual "AA:BB:CC:DD:EE:FF" notation
+     *
+     * @param mac the address, with the first byte of the notation as the most
+     *            significant byte of the lowest 48 bits
+     * @return the formatted address
+     */
+    public static String formatMac(long mac) {
+        char[] chars = new char[17];
+        for (int i = 0; i < 6; i++) {
+            int b = (int) (mac >>> (40 - i * 8)) & 0xFF;
+            chars[i * 3] = HEX_DIGITS[b >>> 4];
+            chars[i * 3 + 1] = HEX_DIGITS[b & 0xF];
+            if (i < 5) {
+                chars[i * 3 + 2] = ':';
+            }
+        }
+        return new String(chars);
+    }
+
+    private static int checkHexLength(int start, int end, byte[] dest, int destOffset) {
+        if (end < start || (end - start) % 2 != 0) {
+            return -1;
+        }
+        int length = (end - start) / 2;
+        if (destOffset < 0 || destOffset + length > dest.length) {
+            throw new IndexOutOfBoundsException("Cannot store " + length + " bytes at " + destOffset
+                    + " in an array of " + dest.length + " bytes");
+        }
+        return length;
+    }
 }
@@ -0,0 +1,108 @@
+package fi.tkgwf.ruuvi.common.utils;
+
+/**
+ * The key table shared by the open addressing maps with long keys. It does
+ * the linear probing in power of two sized arrays, the growing when more than
+ * three quarters of the slots are in use and the backward shift removal, so
+ * that the maps differ only in how they store their values. Subclasses keep
+ * the values in an array parallel to {@link #keys} and tell which slots are in
+ * use.
+ */
+abstract class LongHashTable {
+
+    long[] keys;
+    int mask;
+    int size;
+    private int resizeThreshold;
+
+    /**
+     * Checks whether a slot holds a mapping
+     */
+    abstract boolean isUsed(int slot);
+
+    /**
+     * Moves the value of a slot to a free slot, the key is moved by the caller
+     */
+    abstract void moveValue(int from, int to);
+
+    /**
+     * Marks a slot as free
+     */
+    abstract void free(int slot);
+
+    /**
+     * Allocates tables of the given capacity with {@link #allocateKeys(int)}
+     * and inserts every current mapping into them
+     */
+    abstract void resize(int capacity);
+
+    /**
+     * Allocates an empty key table of the given capacity
+     */
+    final void allocateKeys(int capacity) {
+        keys = new long[capacity];
+        mask = capacity - 1;
+        resizeThreshold = LongHashing.resizeThreshold(capacity);
+    }
+
+    /**
+     * Finds the slot of a key
+     *
+     * @return the slot holding the key, or the free slot where it would be
+     * inserted
+     */
+    final int find(long key) {
+        int i = LongHashing.hash(key) & mask;
+        while (isUsed(i) && keys[i] != key) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    /**
+     * Stores a key in the free slot returned by {@link #find(long)}, once the
+     * subclass has stored its value, and grows the table if it is full
+     */
+    final void insert(int slot, long key) {
+        keys[slot] = key;
+        if (++size > resizeThreshold) {
+            resize(keys.length * 2);
+        }
+    }
+
+    /**
+     * Removes the mapping of a slot. The slot is filled by moving back the
+     * following mappings of the same probe sequence, so that no tombstones are
+     * needed.
+     */
+    final void delete(int hole) {
+        for (int i = (hole + 1) & mask; isUsed(i); i = (i + 1) & mask) {
+            int home = LongHashing.hash(keys[i]) & mask;
+            if (((i - home) & mask) >= ((i - hole) & mask)) {
+                keys[hole] = keys[i];
+                moveValue(i, hole);
+                hole = i;
+            }
+        }
+        free(hole);
+        size--;
+    }
+
+    /**
+     * Gets the number of mappings
+     *
+     * @return the number of keys with a value
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Checks whether the map is empty
+     *
+     * @return true if no key has a value
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+}
@@ -0,0 +1,47 @@
+package fi.tkgwf.ruuvi.common.utils;
+
+/**
+ * Hashing and sizing shared by the open addressing maps with long keys
+ */
+final class LongHashing {
+
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    private LongHashing() {
+    }
+
+    /**
+     * Spreads the bits of a key with a multiply and fold, so that keys
+     * differing only in their low bits, such as MAC addresses of the same
+     * vendor which share their high OUI bits, are spread over the table
+     * instead of landing in neighbouring slots
+     */
+    static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * Gets the capacity needed to hold the given number of mappings without
+     * growing
+     */
+    static int capacityFor(int expectedSize) {
+        if (expectedSize < 0) {
+            throw new IllegalArgumentException("Negative expected size: " + expectedSize);
+        }
+        long needed = (long) expectedSize * 4 / 3 + 1;
+        int capacity = 2;
+        while (capacity < needed && capacity < MAX_CAPACITY) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    /**
+     * Gets the number of mappings after which a map of the given capacity
+     * grows
+     */
+    static int resizeThreshold(int capacity) {
+        return capacity == MAX_CAPACITY ? capacity - 1 : capacity / 4 * 3;
+    }
+}
@@ -0,0 +1,198 @@
+package fi.tkgwf.ruuvi.common.utils;
+
+import java.util.Arrays;
+
+/**
+ * A hash map from primitive long keys, such as MAC addresses, to primitive
+ * int values, which avoids boxing both. Typical uses are counters per tag, or
+ * an index per tag into arrays holding the state of each tag.
+ * <p>
+ * The map uses open addressing with linear probing in power of two sized
+ * arrays, and grows when more than three quarters of the slots are in use.
+ * Keys without a value are reported with a configurable missing value. This
+ * class is not thread safe.
+ */
+public class LongIntMap extends LongHashTable {
+
+    private static final int DEFAULT_EXPECTED_SIZE = 16;
+
+    private final int missingValue;
+    private int[] values;
+    private boolean[] used;
+
+    /**
+     * Creates an empty map which reports keys without a value as -1
+     */
+    public LongIntMap() {
+        this(DEFAULT_EXPECTED_SIZE, -1);
+    }
+
+    /**
+     * Creates an empty map which can hold the given number of mappings
+     * without growing
+     *
+     * @param expectedSize the expected number of mappings
+     * @param missingValue the value returned for keys without a value
+     */
+    public LongIntMap(int expectedSize, int missingValue) {
+        this.missingValue = missingValue;
+        allocate(LongHashing.capacityFor(expectedSize));
+    }
+
+    /**
+     * Gets the value of a key
+     *
+     * @param key the key
+     * @return the value, or the missing value if the key has no value
+     */
+    public int get(long key) {
+        int i = find(key);
+        return used[i] ? values[i] : missingValue;
+    }
+
+    /**
+     * Checks whether a key has a value
+     *
+     * @param key the key
+     * @return true if the key has a value
+     */
+    public boolean containsKey(long key) {
+        return used[find(key)];
+    }
+
+    /**
+     * Sets the value of a key
+     *
+     * @param key the key
+     * @param value the value
+     * @return the previous value, or the missing value if the key had no value
+     */
+    public int put(long key, int value) {
+        int i = find(key);
+        if (used[i]) {
+            int previous = values[i];
+            values[i] = value;
+            return previous;
+        }
+        values[i] = value;
+        used[i] = true;
+        insert(i, key);
+        return missingValue;
+    }
+
+    /**
+     * Adds to the value of a key. A key without a value is set to the delta.
+     *
+     * @param key the key
+     * @param delta the amount to add
+     * @return the new value
+     */
+    public int addTo(long key, int delta) {
+        int i = find(key);
+        if (used[i]) {
+            return values[i] += delta;
+        }
+        values[i] = delta;
+        used[i] = true;
+        insert(i, key);
+        return delta;
+    }
+
+    /**
+     * Removes the value of a key
+     *
+     * @param key the key
+     * @return the removed value, or the missing value if the key had no value
+     */
+    public int remove(long key) {
+        int i = find(key);
+        if (!used[i]) {
+            return missingValue;
+        }
+        int value = values[i];
+        delete(i);
+        return value;
+    }
+
+    /**
+     * Gets the value returned for keys without a value
+     *
+     * @return the missing value
+     */
+    public int getMissingValue() {
+        return missingValue;
+    }
+
+    /**
+     * Removes every mapping, keeping the current capacity
+     */
+    public void clear() {
+        Arrays.fill(used, false);
+        size = 0;
+    }
+
+    /**
+     * Calls the visitor for every mapping, in no particular order. The map
+     * must not be modified during the iteration.
+     *
+     * @param visitor the visitor to call
+     */
+    public void forEach(Visitor visitor) {
+        for (int i = 0; i < used.length; i++) {
+            if (used[i]) {
+                visitor.visit(keys[i], values[i]);
+            }
+        }
+    }
+
+    @Override
+    boolean isUsed(int slot) {
+        return used[slot];
+    }
+
+    @Override
+    void moveValue(int from, int to) {
+        values[to] = values[from];
+    }
+
+    @Override
+    void free(int slot) {
+        used[slot] = false;
+    }
+
+    @Override
+    void resize(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        boolean[] oldUsed = used;
+        allocate(capacity);
+        for (int i = 0; i < oldUsed.length; i++) {
+            if (oldUsed[i]) {
+                int j = find(oldKeys[i]);
+                keys[j] = oldKeys[i];
+                values[j] = oldValues[i];
+                used[j] = true;
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        allocateKeys(capacity);
+        values = new int[capacity];
+        used = new boolean[capacity];
+    }
+
+    /**
+     * Receives the mappings of a {@link LongIntMap}
+     */
+    public interface Visitor {
+
+        /**
+         * Called for every mapping
+         *
+         * @param key the key
+         * @param value the value of the key
+         */
+        void visit(long key, int value);
+    }
+}
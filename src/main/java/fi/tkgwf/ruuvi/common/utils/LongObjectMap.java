@@ -0,0 +1,183 @@
+package fi.tkgwf.ruuvi.common.utils;
+
+import java.util.Arrays;
+import java.util.function.LongFunction;
+
+/**
+ * A hash map from primitive long keys, such as MAC addresses, to objects,
+ * which avoids boxing the keys and creating an entry object per mapping.
+ * <p>
+ * The map uses open addressing with linear probing in power of two sized
+ * arrays, and grows when more than three quarters of the slots are in use.
+ * Null values are not supported. This class is not thread safe.
+ *
+ * @param <V> type of the values
+ */
+public class LongObjectMap<V> extends LongHashTable {
+
+    private static final int DEFAULT_EXPECTED_SIZE = 16;
+
+    private V[] values;
+
+    /**
+     * Creates an empty map
+     */
+    public LongObjectMap() {
+        this(DEFAULT_EXPECTED_SIZE);
+    }
+
+    /**
+     * Creates an empty map which can hold the given number of mappings
+     * without growing
+     *
+     * @param expectedSize the expected number of mappings
+     */
+    public LongObjectMap(int expectedSize) {
+        allocate(LongHashing.capacityFor(expectedSize));
+    }
+
+    /**
+     * Gets the value of a key
+     *
+     * @param key the key
+     * @return the value, or null if the key has no value
+     */
+    public V get(long key) {
+        return values[find(key)];
+    }
+
+    /**
+     * Checks whether a key has a value
+     *
+     * @param key the key
+     * @return true if the key has a value
+     */
+    public boolean containsKey(long key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Sets the value of a key
+     *
+     * @param key the key
+     * @param value the value, not null
+     * @return the previous value, or null if the key had no value
+     * @throws NullPointerException if the value is null
+     */
+    public V put(long key, V value) {
+        if (value == null) {
+            throw new NullPointerException("Null values are not supported");
+        }
+        int i = find(key);
+        V previous = values[i];
+        values[i] = value;
+        if (previous == null) {
+            insert(i, key);
+        }
+        return previous;
+    }
+
+    /**
+     * Gets the value of a key, creating it first if the key has no value
+     *
+     * @param key the key
+     * @param factory creates the value for the key, must not return null
+     * @return the existing or created value
+     */
+    public V computeIfAbsent(long key, LongFunction<? extends V> factory) {
+        V value = get(key);
+        if (value == null) {
+            value = factory.apply(key);
+            put(key, value);
+        }
+        return value;
+    }
+
+    /**
+     * Removes the value of a key
+     *
+     * @param key the key
+     * @return the removed value, or null if the key had no value
+     */
+    public V remove(long key) {
+        int i = find(key);
+        V value = values[i];
+        if (value != null) {
+            delete(i);
+        }
+        return value;
+    }
+
+    /**
+     * Removes every mapping, keeping the current capacity
+     */
+    public void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    /**
+     * Calls the visitor for every mapping, in no particular order. The map
+     * must not be modified during the iteration.
+     *
+     * @param visitor the visitor to call
+     */
+    public void forEach(Visitor<? super V> visitor) {
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null) {
+                visitor.visit(keys[i], values[i]);
+            }
+        }
+    }
+
+    @Override
+    boolean isUsed(int slot) {
+        return values[slot] != null;
+    }
+
+    @Override
+    void moveValue(int from, int to) {
+        values[to] = values[from];
+    }
+
+    @Override
+    void free(int slot) {
+        values[slot] = null;
+    }
+
+    @Override
+    void resize(int capacity) {
+        long[] oldKeys = keys;
+        V[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] != null) {
+                int j = find(oldKeys[i]);
+                keys[j] = oldKeys[i];
+                values[j] = oldValues[i];
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void allocate(int capacity) {
+        allocateKeys(capacity);
+        values = (V[]) new Object[capacity];
+    }
+
+    /**
+     * Receives the mappings of a {@link LongObjectMap}
+     *
+     * @param <V> type of the values
+     */
+    public interface Visitor<V> {
+
+        /**
+         * Called for every mapping
+         *
+         * @param key the key
+         * @param value the value of the key
+         */
+        void visit(long key, V value);
+    }
+}
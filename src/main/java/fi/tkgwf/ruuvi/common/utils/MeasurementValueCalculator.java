@@ -1,5 +1,11 @@
 package fi.tkgwf.ruuvi.common.utils;
 
+/**
+ * Calculates derived values from measurements, returning null if any of the
+ * values needed is not available. See
+ * {@link PrimitiveMeasurementValueCalculator} for the same calculations on
+ * primitive values.
+ */
 public class MeasurementValueCalculator {
 
     /**
@@ -14,7 +20,7 @@ public class MeasurementValueCalculator {
         if (accelerationX == null || accelerationY == null || accelerationZ == null) {
             return null;
         }
-        return Math.sqrt(accelerationX * accelerationX + accelerationY * accelerationY + accelerationZ * accelerationZ);
+        return PrimitiveMeasurementValueCalculator.totalAcceleration(accelerationX, accelerationY, accelerationZ);
     }
 
     /**
@@ -29,7 +35,7 @@ public class MeasurementValueCalculator {
         if (vectorComponent == null || vectorLength == null || vectorLength == 0) {
             return null;
         }
-        return Math.toDegrees(Math.acos(vectorComponent / vectorLength));
+        return PrimitiveMeasurementValueCalculator.angleBetweenVectorComponentAndAxis(vectorComponent, vectorLength);
     }
 
     /**
@@ -43,7 +49,7 @@ public class MeasurementValueCalculator {
         if (temperature == null || relativeHumidity == null) {
             return null;
         }
-        return equilibriumVaporPressure(temperature) * relativeHumidity * 0.021674 / (273.15 + temperature);
+        return PrimitiveMeasurementValueCalculator.absoluteHumidity(temperature, relativeHumidity);
     }
 
     /**
@@ -57,8 +63,7 @@ public class MeasurementValueCalculator {
         if (temperature == null || relativeHumidity == null || relativeHumidity == 0) {
             return null;
         }
-        double v = Math.log(relativeHumidity / 100 * equilibriumVaporPressure(temperature) / 611.2);
-        return -243.5 * v / (v - 17.67);
+        return PrimitiveMeasurementValueCalculator.dewPoint(temperature, relativeHumidity);
     }
 
     /**
@@ -71,7 +76,7 @@ public class MeasurementValueCalculator {
         if (temperature == null) {
             return null;
         }
-        return 611.2 * Math.exp(17.67 * temperature / (243.5 + temperature));
+        return PrimitiveMeasurementValueCalculator.equilibriumVaporPressure(temperature);
     }
 
     /**
@@ -86,8 +91,7 @@ public class MeasurementValueCalculator {
         if (temperature == null || relativeHumidity == null || pressure == null) {
             return null;
         }
-        return 1.2929 * 273.15 / (temperature + 273.15)
-                * (pressure - 0.3783 * relativeHumidity / 100 * equilibriumVaporPressure(temperature)) / 101300;
+        return PrimitiveMeasurementValueCalculator.airDensity(temperature, relativeHumidity, pressure);
     }
 
     /**
@@ -103,17 +107,7 @@ public class MeasurementValueCalculator {
         if (pm25 == null || co2 == null) {
             return null;
         }
-
-        double pm = Math.max(0, Math.min(60, pm25));
-        double co2Val = Math.max(420, Math.min(2300, co2));
-
-        double dx = pm * (100.0 / 60.0);
-        double dy = (co2Val - 420) * (100.0 / 1880.0);
-
-        double r = Math.sqrt(dx * dx + dy * dy);
-        double aqi = 100 - r;
-
-        return Math.max(0, Math.min(100, aqi));
+        return PrimitiveMeasurementValueCalculator.airQualityIndex(pm25, co2);
     }
 
 }
\ No newline at end of file
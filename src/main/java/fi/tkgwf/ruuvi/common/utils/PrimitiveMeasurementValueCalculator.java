@@ -0,0 +1,249 @@
+package fi.tkgwf.ruuvi.common.utils;
+
+import fi.tkgwf.ruuvi.common.jfr.JfrSupport;
+
+/**
+ * The calculations of {@link MeasurementValueCalculator} on primitive values,
+ * which do not allocate. A value which is not available is represented as
+ * {@link Double#NaN}, and any calculation with a value which is not available
+ * returns NaN.
+ * <p>
+ * These are separate methods rather than overloads of the boxed methods,
+ * because calls with double literals would otherwise silently change from the
+ * boxed to the primitive methods and return NaN instead of null.
+ * <p>
+ * The array methods are a convenience for calculating a value for a range of
+ * rows, such as the columns of a
+ * {@link fi.tkgwf.ruuvi.common.bean.MeasurementColumns}. Each row is calculated
+ * with the single value method, so they give the same results and are no
+ * faster than a loop calling it. Row {@code i} of the inputs is read from index
+ * {@code offset + i} and its result is written to index
+ * {@code resultOffset + i}. A calculator batch
+ * event is emitted for every batch when Flight Recorder is available and the
+ * event is enabled in the running recording, see {@link JfrSupport}.
+ */
+public class PrimitiveMeasurementValueCalculator {
+
+    /**
+     * Calculates the total acceleration strength
+     *
+     * @param accelerationX
+     * @param accelerationY
+     * @param accelerationZ
+     * @return The total acceleration strength
+     */
+    public static double totalAcceleration(double accelerationX, double accelerationY, double accelerationZ) {
+        return Math.sqrt(accelerationX * accelerationX + accelerationY * accelerationY + accelerationZ * accelerationZ);
+    }
+
+    /**
+     * Calculates the angle between a vector component and the corresponding
+     * axis
+     *
+     * @param vectorComponent Vector component
+     * @param vectorLength Vector length
+     * @return Angle between the components axis and the vector, in degrees, or
+     * NaN if the vector length is 0
+     */
+    public static double angleBetweenVectorComponentAndAxis(double vectorComponent, double vectorLength) {
+        if (vectorLength == 0) {
+            return Double.NaN;
+        }
+        return Math.toDegrees(Math.acos(vectorComponent / vectorLength));
+    }
+
+    /**
+     * Calculates the absolute humidity
+     *
+     * @param temperature Temperature in Celsius
+     * @param relativeHumidity Relative humidity % (range 0-100)
+     * @return The absolute humidity in g/m^3
+     */
+    public static double absoluteHumidity(double temperature, double relativeHumidity) {
+        return equilibriumVaporPressure(temperature) * relativeHumidity * 0.021674 / (273.15 + temperature);
+    }
+
+    /**
+     * Calculates the dew point
+     *
+     * @param temperature Temperature in Celsius
+     * @param relativeHumidity Relative humidity % (range 0-100)
+     * @return The dew point in Celsius, or NaN if the relative humidity is 0
+     */
+    public static double dewPoint(double temperature, double relativeHumidity) {
+        if (relativeHumidity == 0) {
+            return Double.NaN;
+        }
+        double v = Math.log(relativeHumidity / 100 * equilibriumVaporPressure(temperature) / 611.2);
+        return -243.5 * v / (v - 17.67);
+    }
+
+    /**
+     * Calculates the equilibrium vapor pressure of water
+     *
+     * @param temperature Temperature in Celsius
+     * @return The vapor pressure in Pa
+     */
+    public static double equilibriumVaporPressure(double temperature) {
+        return 611.2 * Math.exp(17.67 * temperature / (243.5 + temperature));
+    }
+
+    /**
+     * Calculates the air density
+     *
+     * @param temperature Temperature in Celsius
+     * @param relativeHumidity Relative humidity % (range 0-100)
+     * @param pressure Pressure in pa
+     * @return The air density in kg/m^3
+     */
+    public static double airDensity(double temperature, double relativeHumidity, double pressure) {
+        return 1.2929 * 273.15 / (temperature + 273.15)
+                * (pressure - 0.3783 * relativeHumidity / 100 * equilibriumVaporPressure(temperature)) / 101300;
+    }
+
+    /**
+     * Calculate Air Quality Index from PM2.5 and CO2 measurements.
+     * <p>
+     * For algorithm details, see https://github.com/ruuvi/com.ruuvi.station.webui/blob/master/src/decoder/untils.js
+     *
+     * @param pm25 PM 2.5, in micrograms per cubic meter.
+     * @param co2 CO2 concentration, in PPM. Check that it is available before
+     * calling, as an int cannot be NaN.
+     * @return Air Quality Index (0-100, higher = better) or NaN if PM 2.5 is
+     * not available
+     */
+    public static double airQualityIndex(double pm25, int co2) {
+        if (Double.isNaN(pm25)) {
+            return Double.NaN; // Math.max and Math.min would not propagate NaN through the clamping
+        }
+
+        double pm = Math.max(0, Math.min(60, pm25));
+        double co2Val = Math.max(420, Math.min(2300, co2));
+
+        double dx = pm * (100.0 / 60.0);
+        double dy = (co2Val - 420) * (100.0 / 1880.0);
+
+        double r = Math.sqrt(dx * dx + dy * dy);
+        double aqi = 100 - r;
+
+        return Math.max(0, Math.min(100, aqi));
+    }
+
+    /**
+     * Calculates the total acceleration strength of a range of rows
+     *
+     * @param accelerationX
+     * @param accelerationY
+     * @param accelerationZ
+     * @param offset index of the first input row
+     * @param result the array to store the total acceleration strengths in
+     * @param resultOffset index of the first result
+     * @param length number of rows
+     */
+    public static void totalAcceleration(double[] accelerationX, double[] accelerationY, double[] accelerationZ,
+            int offset, double[] result, int resultOffset, int length) {
+        Object event = startEvent("totalAcceleration", length);
+        for (int i = 0; i < length; i++) {
+            result[resultOffset + i] = totalAcceleration(accelerationX[offset + i], accelerationY[offset + i],
+                    accelerationZ[offset + i]);
+        }
+        if (event != null) {
+            JfrSupport.EVENTS.endCalculatorBatch(event);
+        }
+    }
+
+    /**
+     * Calculates the absolute humidity of a range of rows
+     *
+     * @param temperature Temperatures in Celsius
+     * @param relativeHumidity Relative humidities % (range 0-100)
+     * @param offset index of the first input row
+     * @param result the array to store the absolute humidities in g/m^3 in
+     * @param resultOffset index of the first result
+     * @param length number of rows
+     */
+    public static void absoluteHumidity(double[] temperature, double[] relativeHumidity, int offset,
+            double[] result, int resultOffset, int length) {
+        Object event = startEvent("absoluteHumidity", length);
+        for (int i = 0; i < length; i++) {
+            result[resultOffset + i] = absoluteHumidity(temperature[offset + i], relativeHumidity[offset + i]);
+        }
+        if (event != null) {
+            JfrSupport.EVENTS.endCalculatorBatch(event);
+        }
+    }
+
+    /**
+     * Calculates the dew point of a range of rows. Rows with a relative
+     * humidity of 0 give NaN.
+     *
+     * @param temperature Temperatures in Celsius
+     * @param relativeHumidity Relative humidities % (range 0-100)
+     * @param offset index of the first input row
+     * @param result the array to store the dew points in Celsius in
+     * @param resultOffset index of the first result
+     * @param length number of rows
+     */
+    public static void dewPoint(double[] temperature, double[] relativeHumidity, int offset,
+            double[] result, int resultOffset, int length) {
+        Object event = startEvent("dewPoint", length);
+        for (int i = 0; i < length; i++) {
+            result[resultOffset + i] = dewPoint(temperature[offset + i], relativeHumidity[offset + i]);
+        }
+        if (event != null) {
+            JfrSupport.EVENTS.endCalculatorBatch(event);
+        }
+    }
+
+    /**
+     * Calculates the equilibrium vapor pressure of water of a range of rows
+     *
+     * @param temperature Temperatures in Celsius
+     * @param offset index of the first input row
+     * @param result the array to store the vapor pressures in Pa in
+     * @param resultOffset index of the first result
+     * @param length number of rows
+     */
+    public static void equilibriumVaporPressure(double[] temperature, int offset, double[] result, int resultOffset,
+            int length) {
+        Object event = startEvent("equilibriumVaporPressure", length);
+        for (int i = 0; i < length; i++) {
+            result[resultOffset + i] = equilibriumVaporPressure(temperature[offset + i]);
+        }
+        if (event != null) {
+            JfrSupport.EVENTS.endCalculatorBatch(event);
+        }
+    }
+
+    /**
+     * Calculates the air density of a range of rows
+     *
+     * @param temperature Temperatures in Celsius
+     * @param relativeHumidity Relative humidities % (range 0-100)
+     * @param pressure Pressures in pa
+     * @param offset index of the first input row
+     * @param result the array to store the air densities in kg/m^3 in
+     * @param resultOffset index of the first result
+     * @param length number of rows
+     */
+    public static void airDensity(double[] temperature, double[] relativeHumidity, double[] pressure, int offset,
+            double[] result, int resultOffset, int length) {
+        Object event = startEvent("airDensity", length);
+        for (int i = 0; i < length; i++) {
+            result[resultOffset + i] = airDensity(temperature[offset + i], relativeHumidity[offset + i], pressure[offset + i]);
+        }
+        if (event != null) {
+            JfrSupport.EVENTS.endCalculatorBatch(event);
+        }
+    }
+
+    /**
+     * Starts a calculator batch event if Flight Recorder is available and the
+     * event is enabled
+     *
+     * @return the started event, or null
+     */
+    private static Object startEvent(String calculation, int length) {
+        return JfrSupport.AVAILABLE ? JfrSupport.EVENTS.beginCalculatorBatch(calculation, length) : null;
+    }
+}
@@ -0,0 +1,50 @@
+package fi.tkgwf.ruuvi.common.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Emitted for every batch parsed by
+ * {@link fi.tkgwf.ruuvi.common.parser.impl.BatchParser}
+ */
+@Name("fi.tkgwf.ruuvi.BatchParse")
+@Label("Parse Batch")
+@Description("A batch of raw data packets was parsed")
+@Category({ "Ruuvi", "Parser" })
+class BatchParseEvent extends Event {
+
+    private static final EventType TYPE = EventType.getEventType(BatchParseEvent.class);
+
+    @Label("Packets")
+    @Description("Number of packets in the batch")
+    int packets;
+
+    @Label("Parsed")
+    @Description("Number of packets parsed successfully")
+    int parsed;
+
+    /**
+     * Sets the result of the batch
+     *
+     * @param packets number of packets in the batch
+     * @param parsed number of packets parsed successfully
+     */
+    public void set(int packets, int parsed) {
+        this.packets = packets;
+        this.parsed = parsed;
+    }
+
+    /**
+     * Checks whether this event is enabled in any running recording, without
+     * creating an event
+     *
+     * @return true if the event is enabled
+     */
+    public static boolean isTypeEnabled() {
+        return TYPE.isEnabled();
+    }
+}
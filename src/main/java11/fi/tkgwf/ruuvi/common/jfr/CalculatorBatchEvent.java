@@ -0,0 +1,65 @@
+package fi.tkgwf.ruuvi.common.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Emitted for every batch calculated by the array methods of
+ * {@link fi.tkgwf.ruuvi.common.utils.PrimitiveMeasurementValueCalculator}
+ */
+@Name("fi.tkgwf.ruuvi.CalculatorBatch")
+@Label("Calculate Batch")
+@Description("Derived values were calculated for a batch of measurements")
+@Category({ "Ruuvi", "Calculator" })
+class CalculatorBatchEvent extends Event {
+
+    private static final EventType TYPE = EventType.getEventType(CalculatorBatchEvent.class);
+
+    @Label("Calculation")
+    @Description("Name of the calculated value")
+    String calculation;
+
+    @Label("Values")
+    @Description("Number of values calculated")
+    int values;
+
+    /**
+     * Checks if the event is enabled in any running recording, so that no
+     * event needs to be created when it is not
+     *
+     * @return true if the event is enabled
+     */
+    public static boolean isTypeEnabled() {
+        return TYPE.isEnabled();
+    }
+
+    /**
+     * Creates an event and starts timing the batch
+     *
+     * @param calculation name of the calculated value
+     * @param values number of values calculated
+     * @return the started event
+     */
+    public static CalculatorBatchEvent start(String calculation, int values) {
+        CalculatorBatchEvent event = new CalculatorBatchEvent();
+        event.calculation = calculation;
+        event.values = values;
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Stops timing the batch and commits the event if it is enabled in the
+     * running recording
+     */
+    public void finish() {
+        end();
+        if (shouldCommit()) {
+            commit();
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package fi.tkgwf.ruuvi.common.jfr;
+
+import fi.tkgwf.ruuvi.common.parser.ParseStatus;
+
+/**
+ * Emits the events of this package, loaded by {@link JfrSupport} when Flight
+ * Recorder is available. The event types are checked before creating an
+ * event, so nothing is allocated while the events are not enabled.
+ */
+class FlightRecorderEvents implements JfrEvents {
+
+    @Override
+    public Object beginParse() {
+        if (!ParseEvent.isTypeEnabled()) {
+            return null;
+        }
+        ParseEvent event = new ParseEvent();
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void endParse(Object event, ParseStatus status, int dataFormat, int length) {
+        ParseEvent parseEvent = (ParseEvent) event;
+        parseEvent.end();
+        if (parseEvent.shouldCommit()) {
+            parseEvent.set(status, dataFormat, length);
+            parseEvent.commit();
+        }
+    }
+
+    @Override
+    public void rejectedPacket(ParseStatus status, byte[] data, int offset, int length) {
+        RejectedPacketEvent.emit(status, data, offset, length);
+    }
+
+    @Override
+    public Object beginBatchParse() {
+        if (!BatchParseEvent.isTypeEnabled()) {
+            return null;
+        }
+        BatchParseEvent event = new BatchParseEvent();
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void endBatchParse(Object event, int packets, int parsed) {
+        BatchParseEvent batchEvent = (BatchParseEvent) event;
+        batchEvent.end();
+        if (batchEvent.shouldCommit()) {
+            batchEvent.set(packets, parsed);
+            batchEvent.commit();
+        }
+    }
+
+    @Override
+    public Object beginCalculatorBatch(String calculation, int values) {
+        return CalculatorBatchEvent.isTypeEnabled() ? CalculatorBatchEvent.start(calculation, values) : null;
+    }
+
+    @Override
+    public void endCalculatorBatch(Object event) {
+        ((CalculatorBatchEvent) event).finish();
+    }
+}
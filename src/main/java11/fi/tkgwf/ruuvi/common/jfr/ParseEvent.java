@@ -0,0 +1,63 @@
+package fi.tkgwf.ruuvi.common.jfr;
+
+import fi.tkgwf.ruuvi.common.parser.ParseStatus;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Emitted for every packet parsed by
+ * {@link fi.tkgwf.ruuvi.common.parser.impl.AnyDataFormatParser}. Disabled by
+ * default as it is emitted for every packet, enable it to get per data format
+ * decode counts and timings.
+ */
+@Name("fi.tkgwf.ruuvi.Parse")
+@Label("Parse Packet")
+@Description("A raw data packet was parsed")
+@Category({ "Ruuvi", "Parser" })
+@Enabled(false)
+@StackTrace(false)
+class ParseEvent extends Event {
+
+    private static final EventType TYPE = EventType.getEventType(ParseEvent.class);
+
+    @Label("Data Format")
+    @Description("Data format of the packet, -1 if the packet was rejected")
+    int dataFormat;
+
+    @Label("Status")
+    String status;
+
+    @Label("Length")
+    @Description("Number of bytes in the packet")
+    int length;
+
+    /**
+     * Sets the result of the parse
+     *
+     * @param status the result of the parse
+     * @param dataFormat data format of the packet, ignored unless the status is
+     * {@link ParseStatus#OK}
+     * @param length number of bytes in the packet
+     */
+    public void set(ParseStatus status, int dataFormat, int length) {
+        this.status = status.name();
+        this.dataFormat = status == ParseStatus.OK ? dataFormat : -1;
+        this.length = length;
+    }
+
+    /**
+     * Checks whether this event is enabled in any running recording, without
+     * creating an event
+     *
+     * @return true if the event is enabled
+     */
+    public static boolean isTypeEnabled() {
+        return TYPE.isEnabled();
+    }
+}
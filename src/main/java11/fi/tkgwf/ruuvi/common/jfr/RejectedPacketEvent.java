@@ -0,0 +1,76 @@
+package fi.tkgwf.ruuvi.common.jfr;
+
+import fi.tkgwf.ruuvi.common.parser.ParseStatus;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Emitted for every packet rejected by
+ * {@link fi.tkgwf.ruuvi.common.parser.impl.AnyDataFormatParser}, including
+ * packets of other devices. Disabled by default for that reason.
+ */
+@Name("fi.tkgwf.ruuvi.RejectedPacket")
+@Label("Rejected Packet")
+@Description("A raw data packet could not be parsed")
+@Category({ "Ruuvi", "Parser" })
+@Enabled(false)
+@StackTrace(false)
+class RejectedPacketEvent extends Event {
+
+    private static final EventType TYPE = EventType.getEventType(RejectedPacketEvent.class);
+    private static final int HEADER_LENGTH = 3;
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    @Label("Status")
+    String status;
+
+    @Label("Length")
+    @Description("Number of bytes in the packet")
+    int length;
+
+    @Label("Header")
+    @Description("The first bytes of the packet in hex")
+    String header;
+
+    /**
+     * Emits an event for a rejected packet if the event is enabled
+     *
+     * @param status the reason the packet was rejected
+     * @param data the array containing the raw data bytes
+     * @param offset index of the first byte of the raw data
+     * @param length number of raw data bytes
+     */
+    public static void emit(ParseStatus status, byte[] data, int offset, int length) {
+        if (!TYPE.isEnabled()) {
+            return;
+        }
+        RejectedPacketEvent event = new RejectedPacketEvent();
+        if (event.shouldCommit()) {
+            event.status = status.name();
+            event.length = length;
+            char[] header = new char[Math.max(0, Math.min(length, HEADER_LENGTH)) * 2];
+            for (int i = 0; i < header.length / 2; i++) {
+                header[i * 2] = HEX[(data[offset + i] >> 4) & 0xF];
+                header[i * 2 + 1] = HEX[data[offset + i] & 0xF];
+            }
+            event.header = new String(header);
+            event.commit();
+        }
+    }
+
+    /**
+     * Checks whether this event is enabled in any running recording, without
+     * creating an event
+     *
+     * @return true if the event is enabled
+     */
+    public static boolean isTypeEnabled() {
+        return TYPE.isEnabled();
+    }
+}
@@ -0,0 +1,333 @@
+package fi.tkgwf.ruuvi.common;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import fi.tkgwf.ruuvi.common.bean.PrimitiveRuuviMeasurement;
+import fi.tkgwf.ruuvi.common.bluetooth.AdvertisementScanner;
+import fi.tkgwf.ruuvi.common.bluetooth.HcidumpReader;
+import fi.tkgwf.ruuvi.common.bluetooth.LeAdvertisingReportDecoder;
+import fi.tkgwf.ruuvi.common.bluetooth.LeExtendedAdvertisingReportDecoder;
+import fi.tkgwf.ruuvi.common.bluetooth.MeasurementListener;
+import fi.tkgwf.ruuvi.common.parser.impl.AnyDataFormatParser;
+import fi.tkgwf.ruuvi.common.utils.ByteUtils;
+import fi.tkgwf.ruuvi.common.parser.ParseStatus;
+import junit.framework.TestCase;
+
+public class BluetoothTest extends TestCase {
+
+    // Flags, Data Format 5 manufacturer data
+    private static final String DATA_FORMAT_5_ADVERTISEMENT = "0201061BFF99040512FC5394C37C0004FFFC040CAC364200CDCBB8334C884F";
+    // Flags, complete list of 16-bit UUIDs, Eddystone URL service data
+    private static final String EDDYSTONE_ADVERTISEMENT = "0201060303AAFE1616AAFE10F8037275752E76692F23416A7759414D4663";
+
+    // LE Advertising Report event with one report from A0:B0:C0:D1:E2:F3, RSSI -60
+    private static final String ADVERTISING_REPORT = "043E2B02010001F3E2D1C0B0A01F" + DATA_FORMAT_5_ADVERTISEMENT + "C4";
+
+    // Flags, Data Format E1 manufacturer data
+    private static final String DATA_FORMAT_E1_ADVERTISEMENT = "0201062BFF9904"
+            + "E1170C5668C79E0065007004BD11CA00C9050113E0AC3D4A9CDECDEE00FFFFFFFFFFCBB8334C884F";
+    private static final String COMPLETE = "0000";
+    private static final String INCOMPLETE = "2000";
+    private static final String TRUNCATED = "4000";
+
+    private byte[] hex(String hex) {
+        byte[] data = ByteUtils.decodeHex(hex);
+        assertNotNull(data);
+        return data;
+    }
+
+    private String extendedReport(String eventType, String address, String data) {
+        // address type, address, primary and secondary PHY, SID, TX power, RSSI, interval, direct address type and address
+        return eventType + "01" + address + "0103007FC4" + "0000" + "00000000000000" + String.format("%02X", data.length() / 2) + data;
+    }
+
+    private byte[] extendedEvent(String... reports) {
+        String joined = String.join("", reports);
+        return hex(String.format("043E%02X0D%02X", 2 + joined.length() / 2, reports.length) + joined);
+    }
+
+    private String hcidumpLines(String prefix, byte[] packet, int bytesPerLine) {
+        StringBuilder sb = new StringBuilder(prefix);
+        for (int i = 0; i < packet.length; i++) {
+            if (i > 0 && i % bytesPerLine == 0) {
+                sb.append("\n ");
+            }
+            sb.append(' ').append(String.format("%02X", packet[i]));
+        }
+        return sb.append('\n').toString();
+    }
+
+    private HcidumpReader hcidumpReader(String text) {
+        return new HcidumpReader(new ByteArrayInputStream(text.getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    // ============= AdvertisementScanner Tests =============
+
+    @Test
+    public void testScanManufacturerData() {
+        AdvertisementScanner scanner = new AdvertisementScanner();
+        byte[] data = hex(DATA_FORMAT_5_ADVERTISEMENT);
+        assertTrue(scanner.scan(data, 0, data.length));
+        assertEquals(5, scanner.getPayloadOffset());
+        assertEquals(26, scanner.getPayloadLength());
+
+        PrimitiveRuuviMeasurement m = new PrimitiveRuuviMeasurement();
+        assertEquals(ParseStatus.OK, scanner.parse(data, 0, data.length, m));
+        assertEquals(5, m.getDataFormat());
+        assertEquals(24.3, m.getTemperature());
+        assertEquals(205, m.getMeasurementSequenceNumber());
+    }
+
+    @Test
+    public void testScanServiceData() {
+        AdvertisementScanner scanner = new AdvertisementScanner();
+        byte[] data = hex(EDDYSTONE_ADVERTISEMENT);
+        PrimitiveRuuviMeasurement m = new PrimitiveRuuviMeasurement();
+        assertEquals(ParseStatus.OK, scanner.parse(data, 0, data.length, m));
+        assertEquals(9, scanner.getPayloadOffset());
+        assertEquals(2, m.getDataFormat());
+        assertEquals(24.0, m.getTemperature());
+    }
+
+    @Test
+    public void testScanRange() {
+        AdvertisementScanner scanner = new AdvertisementScanner();
+        byte[] advertisement = hex(DATA_FORMAT_5_ADVERTISEMENT);
+        byte[] data = new byte[advertisement.length + 10];
+        System.arraycopy(advertisement, 0, data, 4, advertisement.length);
+        assertTrue(scanner.scan(data, 4, advertisement.length));
+        assertEquals(9, scanner.getPayloadOffset());
+        assertEquals(26, scanner.getPayloadLength());
+    }
+
+    @Test
+    public void testScanNotRuuvi() {
+        AdvertisementScanner scanner = new AdvertisementScanner();
+        PrimitiveRuuviMeasurement m = new PrimitiveRuuviMeasurement();
+        byte[] otherCompany = hex("0201060BFF4C000215AABBCCDDEEFF");
+        assertFalse(scanner.scan(otherCompany, 0, otherCompany.length));
+        assertEquals(ParseStatus.NOT_RUUVI, scanner.parse(otherCompany, 0, otherCompany.length, m));
+        byte[] localName = hex("020106050952757576");
+        assertFalse(scanner.scan(localName, 0, localName.length));
+        byte[] padded = hex("0201060000001BFF9904");
+        assertFalse(scanner.scan(padded, 0, padded.length));
+        assertFalse(scanner.scan(new byte[0], 0, 0));
+    }
+
+    @Test
+    public void testScanTruncated() {
+        AdvertisementScanner scanner = new AdvertisementScanner();
+        PrimitiveRuuviMeasurement m = new PrimitiveRuuviMeasurement();
+        byte[] data = hex(DATA_FORMAT_5_ADVERTISEMENT);
+        assertTrue(scanner.scan(data, 0, 20));
+        assertEquals(15, scanner.getPayloadLength());
+        assertEquals(ParseStatus.TRUNCATED, scanner.parse(data, 0, 20, m));
+        assertFalse(scanner.scan(data, 0, 6)); // only the length and the type of the manufacturer data
+    }
+
+    // ============= LeAdvertisingReportDecoder Tests =============
+
+    @Test
+    public void testDecodeAdvertisingReport() {
+        LeAdvertisingReportDecoder decoder = new LeAdvertisingReportDecoder();
+        byte[] data = hex(ADVERTISING_REPORT);
+        assertTrue(decoder.wrap(data, 0, data.length));
+        assertEquals(1, decoder.getReportCount());
+        assertTrue(decoder.next());
+        assertEquals(0x00, decoder.getEventType());
+        assertEquals(0x01, decoder.getAddressType());
+        assertEquals(0xA0B0C0D1E2F3L, decoder.getAddress());
+        assertEquals(-60, decoder.getRssi());
+        assertEquals(14, decoder.getDataOffset());
+        assertEquals(31, decoder.getDataLength());
+        PrimitiveRuuviMeasurement m = new PrimitiveRuuviMeasurement();
+        assertEquals(ParseStatus.OK, decoder.parse(m));
+        assertEquals(24.3, m.getTemperature());
+        assertFalse(decoder.next());
+
+        // without the packet indicator
+        assertTrue(decoder.wrap(data, 1, data.length - 1));
+        assertTrue(decoder.next());
+        assertEquals(0xA0B0C0D1E2F3L, decoder.getAddress());
+    }
+
+    @Test
+    public void testDecodeMultipleAdvertisingReports() {
+        LeAdvertisingReportDecoder decoder = new LeAdvertisingReportDecoder();
+        // every field is an array over the reports
+        byte[] data = hex("043E380202" + "0003" + "0100" + "F3E2D1C0B0A0" + "665544332211" + "1F03"
+                + DATA_FORMAT_5_ADVERTISEMENT + "020106" + "C4B0");
+        List<String> received = new ArrayList<>();
+        int count = decoder.decode(data, 0, data.length,
+                (mac, rssi, m) -> received.add(Long.toHexString(mac) + " " + rssi + " " + m.getMeasurementSequenceNumber()));
+        assertEquals(1, count);
+        assertEquals(1, received.size());
+        assertEquals("a0b0c0d1e2f3 -60 205", received.get(0));
+
+        assertTrue(decoder.wrap(data, 0, data.length));
+        assertEquals(2, decoder.getReportCount());
+        assertTrue(decoder.next());
+        assertTrue(decoder.next());
+        assertEquals(0x03, decoder.getEventType());
+        assertEquals(0x112233445566L, decoder.getAddress());
+        assertEquals(-80, decoder.getRssi());
+        assertEquals(ParseStatus.NOT_RUUVI, decoder.parse(new PrimitiveRuuviMeasurement()));
+        assertEquals(3, decoder.getDataLength());
+        assertFalse(decoder.next());
+
+        assertTrue(decoder.wrap(data, 0, data.length));
+        assertTrue(decoder.next());
+        assertEquals(0x00, decoder.getEventType());
+        assertEquals(0x01, decoder.getAddressType());
+        assertEquals(0xA0B0C0D1E2F3L, decoder.getAddress());
+        assertEquals(-60, decoder.getRssi());
+        assertEquals(23, decoder.getDataOffset());
+
+        // truncated, the RSSI of the second report is missing
+        assertTrue(decoder.wrap(data, 0, data.length - 1));
+        assertEquals(2, decoder.getReportCount());
+        assertFalse(decoder.next());
+    }
+
+    @Test
+    public void testDecodeInvalidAdvertisingReport() {
+        LeAdvertisingReportDecoder decoder = new LeAdvertisingReportDecoder();
+        byte[] data = hex(ADVERTISING_REPORT);
+        // truncated, the RSSI is missing
+        assertTrue(decoder.wrap(data, 0, data.length - 1));
+        assertFalse(decoder.next());
+        // not an advertising report
+        byte[] other = hex("040E0401030C00");
+        assertFalse(decoder.wrap(other, 0, other.length));
+        assertEquals(0, decoder.decode(other, 0, other.length, (mac, rssi, m) -> fail()));
+        assertFalse(decoder.wrap(data, 0, 3));
+    }
+
+    // ============= LeExtendedAdvertisingReportDecoder Tests =============
+
+    @Test
+    public void testDecodeExtendedAdvertisingReport() {
+        LeExtendedAdvertisingReportDecoder decoder = new LeExtendedAdvertisingReportDecoder();
+        List<String> received = new ArrayList<>();
+        MeasurementListener listener = (mac, rssi, m) -> received
+                .add(Long.toHexString(mac) + " " + rssi + " " + m.getDataFormat() + " " + m.getCo2());
+        byte[] data = extendedEvent(extendedReport(COMPLETE, "F3E2D1C0B0A0", DATA_FORMAT_E1_ADVERTISEMENT));
+        assertEquals(1, decoder.decode(data, 0, data.length, listener));
+        assertEquals(1, decoder.decode(data, 1, data.length - 1, listener));
+        assertEquals(2, received.size());
+        assertEquals("a0b0c0d1e2f3 -60 225 201", received.get(0));
+
+        byte[] legacy = hex(ADVERTISING_REPORT);
+        assertEquals(0, decoder.decode(legacy, 0, legacy.length, listener));
+        assertEquals(0, decoder.decode(data, 0, data.length - 1, listener));
+    }
+
+    @Test
+    public void testDecodeFragmentedExtendedAdvertisingReport() {
+        LeExtendedAdvertisingReportDecoder decoder = new LeExtendedAdvertisingReportDecoder();
+        List<String> received = new ArrayList<>();
+        MeasurementListener listener = (mac, rssi, m) -> received
+                .add(Long.toHexString(mac) + " " + m.getMeasurementSequenceNumber());
+        String first = DATA_FORMAT_E1_ADVERTISEMENT.substring(0, 40);
+        String second = DATA_FORMAT_E1_ADVERTISEMENT.substring(40, 70);
+        String third = DATA_FORMAT_E1_ADVERTISEMENT.substring(70);
+
+        byte[] data = extendedEvent(extendedReport(INCOMPLETE, "F3E2D1C0B0A0", first));
+        assertEquals(0, decoder.decode(data, 0, data.length, listener));
+        // another advertiser in between, in the same event as the next fragment
+        data = extendedEvent(extendedReport(COMPLETE, "112233445566", DATA_FORMAT_E1_ADVERTISEMENT),
+                extendedReport(INCOMPLETE, "F3E2D1C0B0A0", second));
+        assertEquals(1, decoder.decode(data, 0, data.length, listener));
+        data = extendedEvent(extendedReport(COMPLETE, "F3E2D1C0B0A0", third));
+        assertEquals(1, decoder.decode(data, 0, data.length, listener));
+        assertEquals(2, received.size());
+        assertEquals("665544332211 14601710", received.get(0));
+        assertEquals("a0b0c0d1e2f3 14601710", received.get(1));
+
+        // the last fragment alone is not a valid advertisement
+        assertEquals(0, decoder.decode(data, 0, data.length, listener));
+    }
+
+    @Test
+    public void testDecodeTruncatedExtendedAdvertisingReport() {
+        List<String> received = new ArrayList<>();
+        MeasurementListener listener = (mac, rssi, m) -> received.add(Long.toHexString(mac));
+        String first = DATA_FORMAT_E1_ADVERTISEMENT.substring(0, 40);
+        String rest = DATA_FORMAT_E1_ADVERTISEMENT.substring(40);
+
+        LeExtendedAdvertisingReportDecoder decoder = new LeExtendedAdvertisingReportDecoder();
+        byte[] data = extendedEvent(extendedReport(INCOMPLETE, "F3E2D1C0B0A0", first),
+                extendedReport(TRUNCATED, "F3E2D1C0B0A0", ""),
+                extendedReport(COMPLETE, "F3E2D1C0B0A0", rest));
+        assertEquals(0, decoder.decode(data, 0, data.length, listener));
+
+        // only one advertiser can be reassembled, the oldest one is dropped
+        decoder = new LeExtendedAdvertisingReportDecoder(new AnyDataFormatParser(), 1);
+        data = extendedEvent(extendedReport(INCOMPLETE, "F3E2D1C0B0A0", first),
+                extendedReport(INCOMPLETE, "112233445566", first),
+                extendedReport(COMPLETE, "F3E2D1C0B0A0", rest),
+                extendedReport(COMPLETE, "112233445566", rest));
+        assertEquals(1, decoder.decode(data, 0, data.length, listener));
+        assertEquals("665544332211", received.get(0));
+
+        data = extendedEvent(extendedReport(INCOMPLETE, "F3E2D1C0B0A0", first));
+        decoder.decode(data, 0, data.length, listener);
+        decoder.clear();
+        data = extendedEvent(extendedReport(COMPLETE, "F3E2D1C0B0A0", rest));
+        assertEquals(0, decoder.decode(data, 0, data.length, listener));
+        assertEquals(1, received.size());
+    }
+
+    // ============= HcidumpReader Tests =============
+
+    @Test
+    public void testReadHcidump() throws IOException {
+        byte[] report = hex(ADVERTISING_REPORT);
+        byte[] extended = extendedEvent(extendedReport(COMPLETE, "112233445566", DATA_FORMAT_E1_ADVERTISEMENT));
+        String text = "HCI sniffer - Bluetooth packet analyzer ver 5.50\n"
+                + "device: hci0 snap_len: 1500 filter: 0xffffffffffffffff\n"
+                + "< 01 0B 20 07 01 10 00 10 00 00 00\n"
+                + "> 04 0E 04 01 0B 20 00\n"
+                + hcidumpLines(">", report, 20)
+                + hcidumpLines(">", extended, 16).replace("\n", "\r\n")
+                + "> 02 40 20 05 00 01 00 04 00\n"
+                + "  01 02 03\n"
+                + hcidumpLines(">", report, 100).toLowerCase();
+        List<String> received = new ArrayList<>();
+        long count = hcidumpReader(text).read((mac, rssi, m) -> received.add(Long.toHexString(mac) + " " + m.getDataFormat()));
+        assertEquals(3, count);
+        assertEquals("a0b0c0d1e2f3 5", received.get(0));
+        assertEquals("665544332211 225", received.get(1));
+        assertEquals("a0b0c0d1e2f3 5", received.get(2));
+    }
+
+    @Test
+    public void testReadHcidumpPackets() throws IOException {
+        byte[] report = hex(ADVERTISING_REPORT);
+        String text = "> 04 0E 04 01 0B 20 00\n"
+                + "< 01 0B 20 07 01 10 00 10 00 00 00\n"
+                + hcidumpLines(">", report, 20)
+                + "> 04 3E 2B 02 01 00\n" // truncated by the next packet
+                + "> 02 40 20 05 00 01 00 04 00\n"
+                + "> 04 3E 0A";
+        HcidumpReader reader = hcidumpReader(text);
+        assertTrue(reader.next());
+        assertEquals(7, reader.getPacketLength());
+        assertEquals(0x0E, reader.getPacket()[1]);
+        assertTrue(reader.next());
+        assertEquals(report.length, reader.getPacketLength());
+        assertEquals((byte) 0xC4, reader.getPacket()[report.length - 1]);
+        assertTrue(reader.next());
+        assertEquals(6, reader.getPacketLength());
+        assertTrue(reader.next()); // truncated by the end of the input
+        assertEquals(3, reader.getPacketLength());
+        assertFalse(reader.next());
+        assertFalse(reader.next());
+    }
+}
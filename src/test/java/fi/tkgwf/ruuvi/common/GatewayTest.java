@@ -0,0 +1,110 @@
+package fi.tkgwf.ruuvi.common;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import fi.tkgwf.ruuvi.common.gateway.GatewayJsonDecoder;
+import fi.tkgwf.ruuvi.common.gateway.GatewayMeasurementListener;
+import junit.framework.TestCase;
+
+public class GatewayTest extends TestCase {
+
+    private static final String DATA_FORMAT_5_ADVERTISEMENT = "0201061BFF99040512FC5394C37C0004FFFC040CAC364200CDCBB8334C884F";
+    private static final String DATA_FORMAT_6_ADVERTISEMENT = "02010617FF990406170C5668C79E007000C90501D94ACD004C884F";
+
+    private final List<String> received = new ArrayList<>();
+    private final GatewayMeasurementListener listener = (mac, rssi, timestamp, m) -> received
+            .add(Long.toHexString(mac) + " " + rssi + " " + timestamp + " " + m.getDataFormat() + " " + m.getTemperature());
+
+    private int decode(GatewayJsonDecoder decoder, String json) {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        return decoder.decode(bytes, 0, bytes.length, listener);
+    }
+
+    @Test
+    public void testDecodeHttpDocument() {
+        String json = "{\n"
+                + "  \"data\": {\n"
+                + "    \"coordinates\": \"\",\n"
+                + "    \"timestamp\": 1633248443,\n"
+                + "    \"nonce\": 2.5e3,\n"
+                + "    \"gw_mac\": \"C8:25:2D:8E:9C:2C\",\n"
+                + "    \"tags\": {\n"
+                + "      \"D2:A3:6E:C8:E0:25\": {\n"
+                + "        \"rssi\": -62,\n"
+                + "        \"aoa\": [1, [2, \"]\"], {\"x\": null}],\n"
+                + "        \"timestamp\": 1633248440,\n"
+                + "        \"data\": \"" + DATA_FORMAT_5_ADVERTISEMENT + "\"\n"
+                + "      },\n"
+                + "      \"E1:02:03:04:05:06\": {\"data\": \"" + DATA_FORMAT_6_ADVERTISEMENT.toLowerCase()
+                + "\", \"timestamp\": \"1633248441\", \"rssi\": -80},\n"
+                + "      \"F1:02:03:04:05:06\": {\"rssi\": -70, \"timestamp\": 1633248442, \"data\": \"0201060303AAFE\"},\n"
+                + "      \"invalid\": {\"rssi\": -70, \"timestamp\": 1633248442, \"data\": \"" + DATA_FORMAT_5_ADVERTISEMENT + "\"}\n"
+                + "    }\n"
+                + "  }\n"
+                + "}\n";
+        GatewayJsonDecoder decoder = new GatewayJsonDecoder();
+        assertEquals(2, decode(decoder, json));
+        assertEquals(2, received.size());
+        assertEquals("d2a36ec8e025 -62 1633248440 5 24.3", received.get(0));
+        assertEquals("e10203040506 -80 1633248441 6 29.5", received.get(1));
+
+        // the decoder is reused
+        assertEquals(2, decode(decoder, json));
+        assertEquals(4, received.size());
+    }
+
+    @Test
+    public void testDecodeMqttMessage() {
+        String json = "{\"gw_mac\": \"C8:25:2D:8E:9C:2C\", \"rssi\": -62, \"aoa\": [], \"gwts\": \"1625000001\","
+                + " \"ts\": \"1625000000\", \"data\": \"" + DATA_FORMAT_5_ADVERTISEMENT + "\", \"coords\": \"\"}";
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        assertEquals(1, new GatewayJsonDecoder().decodeTag(bytes, 0, bytes.length, 0xD2A36EC8E025L, listener));
+        assertEquals("d2a36ec8e025 -62 1625000000 5 24.3", received.get(0));
+    }
+
+    @Test
+    public void testDecodeNonIntegerValues() {
+        GatewayJsonDecoder decoder = new GatewayJsonDecoder();
+        // a timestamp that is not an integer is left out
+        assertEquals(3, decode(decoder, "{\"tags\": {"
+                + "\"D2:A3:6E:C8:E0:25\": {\"rssi\": -62, \"timestamp\": null, \"data\": \"" + DATA_FORMAT_5_ADVERTISEMENT + "\"},"
+                + "\"D2:A3:6E:C8:E0:26\": {\"rssi\": -63, \"timestamp\": 1633248440.5, \"data\": \"" + DATA_FORMAT_5_ADVERTISEMENT + "\"},"
+                + "\"D2:A3:6E:C8:E0:27\": {\"ts\": 1.6e9, \"rssi\": -64, \"data\": \"" + DATA_FORMAT_5_ADVERTISEMENT + "\"}}}"));
+        assertEquals("d2a36ec8e025 -62 0 5 24.3", received.get(0));
+        assertEquals("d2a36ec8e026 -63 0 5 24.3", received.get(1));
+        assertEquals("d2a36ec8e027 -64 0 5 24.3", received.get(2));
+        // a tag without an integer rssi is skipped, but the rest of the document is decoded
+        received.clear();
+        assertEquals(1, decode(decoder, "{\"tags\": {"
+                + "\"D2:A3:6E:C8:E0:25\": {\"rssi\": null, \"data\": \"" + DATA_FORMAT_5_ADVERTISEMENT + "\"},"
+                + "\"D2:A3:6E:C8:E0:26\": {\"rssi\": -71.5, \"data\": \"" + DATA_FORMAT_5_ADVERTISEMENT + "\"},"
+                + "\"D2:A3:6E:C8:E0:27\": {\"rssi\": -64, \"timestamp\": 1633248440, \"data\": \"" + DATA_FORMAT_5_ADVERTISEMENT + "\"}}}"));
+        assertEquals(1, received.size());
+        assertEquals("d2a36ec8e027 -64 1633248440 5 24.3", received.get(0));
+    }
+
+    @Test
+    public void testDecodeInvalidDocument() {
+        GatewayJsonDecoder decoder = new GatewayJsonDecoder();
+        assertEquals(0, decode(decoder, "{}"));
+        assertEquals(0, decode(decoder, "{\"data\": {\"tags\": {}}}"));
+        assertEquals(-1, decode(decoder, ""));
+        assertEquals(-1, decode(decoder, "{\"data\": {\"tags\": {\"D2:A3:6E:C8:E0:25\": {\"rssi\": -62,"));
+        assertEquals(-1, decode(decoder, "{\"data\" {}}"));
+        assertEquals(-1, decode(decoder, "{\"data\": {},}"));
+        assertEquals(-1, decode(decoder, "{\"data\": \"unterminated}"));
+        assertEquals(-1, decode(decoder, "{} {}"));
+        // the tags before the error are decoded
+        assertEquals(-1, decode(decoder, "{\"tags\": {\"D2:A3:6E:C8:E0:25\": {\"rssi\": -62, \"data\": \""
+                + DATA_FORMAT_5_ADVERTISEMENT + "\"}, \"E1:02:03:04:05:06\": {\"rssi\": }}}"));
+        assertEquals(1, received.size());
+        assertEquals("d2a36ec8e025 -62 0 5 24.3", received.get(0));
+        // odd number of hex characters
+        assertEquals(0, decode(decoder, "{\"tags\": {\"D2:A3:6E:C8:E0:25\": {\"rssi\": -62, \"data\": \"0"
+                + DATA_FORMAT_5_ADVERTISEMENT + "\"}}}"));
+    }
+}
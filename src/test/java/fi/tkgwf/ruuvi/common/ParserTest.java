@@ -1,13 +1,31 @@
 package fi.tkgwf.ruuvi.common;
 
-import org.apache.commons.codec.DecoderException;
-import org.apache.commons.codec.binary.Hex;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Set;
+
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
+import fi.tkgwf.ruuvi.common.bean.MeasurementColumns;
+import fi.tkgwf.ruuvi.common.bean.MeasurementField;
+import fi.tkgwf.ruuvi.common.bean.PrimitiveRuuviMeasurement;
 import fi.tkgwf.ruuvi.common.bean.RuuviMeasurement;
+import fi.tkgwf.ruuvi.common.parser.DataFormatParser;
+import fi.tkgwf.ruuvi.common.parser.ParseStatus;
 import fi.tkgwf.ruuvi.common.parser.impl.AnyDataFormatParser;
+import fi.tkgwf.ruuvi.common.parser.impl.BatchParser;
+import fi.tkgwf.ruuvi.common.parser.impl.DataFormat2Parser;
+import fi.tkgwf.ruuvi.common.parser.impl.DataFormat4Parser;
+import fi.tkgwf.ruuvi.common.parser.impl.DataFormat5Parser;
+import fi.tkgwf.ruuvi.common.parser.impl.DataFormat6Parser;
+import fi.tkgwf.ruuvi.common.parser.impl.DataFormatE1Parser;
+import fi.tkgwf.ruuvi.common.parser.impl.LazyRuuviMeasurement;
+import fi.tkgwf.ruuvi.common.parser.impl.MeteredDataFormatParser;
+import fi.tkgwf.ruuvi.common.parser.impl.ParserMetrics;
+import fi.tkgwf.ruuvi.common.utils.ByteUtils;
 import junit.framework.TestCase;
 
 public class ParserTest extends TestCase {
@@ -35,17 +53,13 @@ public class ParserTest extends TestCase {
     }
 
     private byte[] dataWithCompany(String rawHex) {
-        try {
-            byte[] rawBytes = Hex.decodeHex(rawHex);
-            byte[] data = new byte[2 + rawBytes.length];
-            data[0] = (byte) 0x99; // company id
-            data[1] = (byte) 0x04; // company id
-            System.arraycopy(rawBytes, 0, data, 2, rawBytes.length);
-            return data;
-        } catch (DecoderException e) {
+        byte[] data = new byte[2 + rawHex.length() / 2];
+        data[0] = (byte) 0x99; // company id
+        data[1] = (byte) 0x04; // company id
+        if (ByteUtils.decodeHex(rawHex, 0, rawHex.length(), data, 2) < 0) {
             Assert.fail();
-            return null;
         }
+        return data;
     }
 
     private byte[] dataWithCompany(byte[] rawWithoutCompany) {
@@ -1821,4 +1835,430 @@ public class ParserTest extends TestCase {
     public void testInvalidTooShort3() {
         assertNull(parser.parse("000".getBytes()));
     }
+
+    @Test
+    public void testInvalidUnknownDataFormat() {
+        assertNull(parser.parse(dataWithCompany("0712FC5394C37C0004FFFC040CAC364200CDCBB8334C884F")));
+    }
+
+    @Test
+    public void testInvalidCompanyIdentifier() {
+        byte[] data = dataWithCompany("0512FC5394C37C0004FFFC040CAC364200CDCBB8334C884F");
+        data[1] = 0x05;
+        assertNull(parser.parse(data));
+    }
+
+    @Test
+    public void testParseOffsetLength() {
+        byte[] payload = dataWithCompany("0512FC5394C37C0004FFFC040CAC364200CDCBB8334C884F");
+        byte[] buffer = new byte[payload.length + 10];
+        Arrays.fill(buffer, (byte) 0xFF);
+        System.arraycopy(payload, 0, buffer, 7, payload.length);
+        RuuviMeasurement m = parser.parse(buffer, 7, payload.length);
+        assertEquals(24.3, m.getTemperature());
+        assertEquals(100044.0, m.getPressure());
+        assertEquals((Integer) 205, m.getMeasurementSequenceNumber());
+        assertNull(parser.parse(buffer, 7, payload.length - 1)); // truncated
+    }
+
+    @Test
+    public void testParseOffsetLengthEddystone() {
+        byte[] payload = eddystoneData("AjwYAMFc");
+        byte[] buffer = new byte[payload.length + 4];
+        System.arraycopy(payload, 0, buffer, 3, payload.length);
+        RuuviMeasurement m = parser.parse(buffer, 3, payload.length);
+        assertEquals(24.0, m.getTemperature());
+        assertEquals(30.0, m.getHumidity());
+    }
+
+    @Test
+    public void testParseByteBuffer() {
+        byte[] payload = dataWithCompany("0512FC5394C37C0004FFFC040CAC364200CDCBB8334C884F");
+        ByteBuffer heap = ByteBuffer.allocate(payload.length + 3);
+        heap.position(3);
+        heap.put(payload);
+        heap.position(3);
+        assertEquals(24.3, parser.parse(heap).getTemperature());
+        assertEquals(3, heap.position());
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(payload.length);
+        direct.put(payload);
+        direct.flip();
+        assertEquals(53.49, parser.parse(direct).getHumidity());
+        assertEquals(0, direct.position());
+    }
+
+    @Test
+    public void testParseIntoPrimitiveMeasurement() {
+        PrimitiveRuuviMeasurement m = new PrimitiveRuuviMeasurement();
+        byte[] valid = dataWithCompany("0512FC5394C37C0004FFFC040CAC364200CDCBB8334C884F");
+        assertEquals(ParseStatus.OK, parser.parse(valid, 0, valid.length, m));
+        assertEquals(5, m.getDataFormat());
+        assertEquals(24.3, m.getTemperature());
+        assertEquals(53.49, m.getHumidity());
+        assertEquals(100044.0, m.getPressure());
+        assertEquals(2.9770000000000003, m.getBatteryVoltage());
+        assertEquals(1.036, m.getAccelerationZ());
+        assertEquals(4, m.getTxPower());
+        assertEquals(66, m.getMovementCounter());
+        assertEquals(205, m.getMeasurementSequenceNumber());
+        assertTrue(m.has(MeasurementField.TEMPERATURE));
+        assertFalse(m.has(MeasurementField.CO2));
+
+        // the same instance is reused, fields not present in the new packet are cleared
+        byte[] invalid = dataWithCompany("058000FFFFFFFF800080008000FFFFFFFFFFFFFFFFFFFFFF");
+        assertEquals(ParseStatus.OK, parser.parse(invalid, 0, invalid.length, m));
+        assertEquals(0, m.getPresenceMask());
+        assertTrue(Double.isNaN(m.getTemperature()));
+        assertEquals(0, m.getMeasurementSequenceNumber());
+
+        // a failed parse leaves the measurement untouched
+        assertEquals(ParseStatus.OK, parser.parse(valid, 0, valid.length, m));
+        assertEquals(ParseStatus.TRUNCATED, parser.parse(valid, 0, 10, m));
+        assertEquals(24.3, m.getTemperature());
+    }
+
+    @Test
+    public void testParseIntoPrimitiveMeasurementDefaultMethod() {
+        DataFormatParser custom = data -> parser.parse(data);
+        PrimitiveRuuviMeasurement m = new PrimitiveRuuviMeasurement();
+        byte[] valid = dataWithCompany("0512FC5394C37C0004FFFC040CAC364200CDCBB8334C884F");
+        assertEquals(ParseStatus.OK, custom.parse(valid, 0, valid.length, m));
+        assertEquals(24.3, m.getTemperature());
+        assertEquals(205, m.getMeasurementSequenceNumber());
+        assertEquals(ParseStatus.UNKNOWN_FORMAT, custom.parse(valid, 0, 10, m));
+        assertEquals(parser.parse(valid).toString(), m.toString());
+    }
+
+    @Test
+    public void testLazyMeasurementMatchesParse() {
+        byte[][] packets = {
+                eddystoneData("AjwYAMFc"),
+                eddystoneData("AjUX1MAw0"),
+                dataWithCompany("03291A1ECE1EFC18F94202CA0B5300000000BB"),
+                dataWithCompany("0512FC5394C37C0004FFFC040CAC364200CDCBB8334C884F"),
+                dataWithCompany("058000FFFFFFFF800080008000FFFFFFFFFFFFFFFFFFFFFF"),
+                dataWithCompany("06170C5668C79E007000C90501D94ACD004C884F"),
+                dataWithCompany("E1170C5668C79E0065007004BD11CA00C9050113E0AC3D4A9CDECDEE00FFFFFFFFFFCBB8334C884F") };
+        LazyRuuviMeasurement lazy = new LazyRuuviMeasurement();
+        for (byte[] packet : packets) {
+            RuuviMeasurement m = parser.parse(packet);
+            assertTrue(lazy.wrap(packet, 0, packet.length));
+            assertEquals(m.getDataFormat(), lazy.getDataFormat());
+            assertEquals(m.getTemperature(), lazy.getTemperature());
+            assertEquals(m.getHumidity(), lazy.getHumidity());
+            assertEquals(m.getPressure(), lazy.getPressure());
+            assertEquals(m.getAccelerationX(), lazy.getAccelerationX());
+            assertEquals(m.getAccelerationY(), lazy.getAccelerationY());
+            assertEquals(m.getAccelerationZ(), lazy.getAccelerationZ());
+            assertEquals(m.getBatteryVoltage(), lazy.getBatteryVoltage());
+            assertEquals(m.getTxPower(), lazy.getTxPower());
+            assertEquals(m.getMovementCounter(), lazy.getMovementCounter());
+            assertEquals(m.getMeasurementSequenceNumber(), lazy.getMeasurementSequenceNumber());
+            assertEquals(m.getPm1(), lazy.getPm1());
+            assertEquals(m.getPm25(), lazy.getPm25());
+            assertEquals(m.getPm4(), lazy.getPm4());
+            assertEquals(m.getPm10(), lazy.getPm10());
+            assertEquals(m.getCo2(), lazy.getCo2());
+            assertEquals(m.getVocIndex(), lazy.getVocIndex());
+            assertEquals(m.getNoxIndex(), lazy.getNoxIndex());
+            assertEquals(m.getLuminosity(), lazy.getLuminosity());
+            assertEquals(m.isCalibrationInProgress(), lazy.isCalibrationInProgress());
+            assertEquals(m.toString(), lazy.toString());
+        }
+    }
+
+    @Test
+    public void testLazyMeasurementInvalid() {
+        LazyRuuviMeasurement lazy = new LazyRuuviMeasurement();
+        byte[] packet = dataWithCompany("0712FC5394C37C0004FFFC040CAC364200CDCBB8334C884F");
+        assertFalse(lazy.wrap(packet, 0, packet.length));
+        assertNull(lazy.getDataFormat());
+        assertNull(lazy.getTemperature());
+        assertNull(lazy.toRuuviMeasurement());
+        // re-pointing to a valid packet forgets the fields of the previous one
+        byte[] valid = dataWithCompany("0512FC5394C37C0004FFFC040CAC364200CDCBB8334C884F");
+        assertTrue(lazy.wrap(valid, 0, valid.length));
+        assertEquals((Double) 24.3, lazy.getTemperature());
+        byte[] notAvailable = dataWithCompany("058000FFFFFFFF800080008000FFFFFFFFFFFFFFFFFFFFFF");
+        assertTrue(lazy.wrap(notAvailable, 0, notAvailable.length));
+        assertNull(lazy.getTemperature());
+        assertEquals((Integer) 5, lazy.getDataFormat());
+    }
+
+    @Test
+    public void testProjectedParse() {
+        Set<MeasurementField> fields = EnumSet.of(MeasurementField.TEMPERATURE, MeasurementField.CO2);
+        byte[] df5 = dataWithCompany("0512FC5394C37C0004FFFC040CAC364200CDCBB8334C884F");
+        byte[] e1 = dataWithCompany("E1170C5668C79E0065007004BD11CA00C9050113E0AC3D4A9CDECDEE00FFFFFFFFFFCBB8334C884F");
+        for (DataFormatParser projected : new DataFormatParser[] { new AnyDataFormatParser(fields),
+                new DataFormat5Parser(fields), new DataFormatE1Parser(fields) }) {
+            PrimitiveRuuviMeasurement m = new PrimitiveRuuviMeasurement();
+            if (projected.parse(df5, 0, df5.length, m).isOk()) {
+                assertEquals(5, m.getDataFormat());
+                assertEquals(MeasurementField.TEMPERATURE.mask(), m.getPresenceMask());
+                assertEquals(24.3, m.getTemperature());
+            }
+            if (projected.parse(e1, 0, e1.length, m).isOk()) {
+                assertEquals(0xE1, m.getDataFormat());
+                assertEquals(MeasurementField.mask(fields), m.getPresenceMask());
+                assertEquals(29.5, m.getTemperature(), 0.01);
+                assertEquals(201, m.getCo2());
+            }
+        }
+
+        RuuviMeasurement m = new DataFormat6Parser(EnumSet.of(MeasurementField.HUMIDITY))
+                .parse(dataWithCompany("06170C5668C79E007000C90501D94ACD004C884F"));
+        assertEquals(55.3, m.getHumidity(), 0.01);
+        assertNull(m.getTemperature());
+        assertNull(m.getMeasurementSequenceNumber());
+        assertNull(m.isCalibrationInProgress());
+    }
+
+    @Test
+    public void testBatchParse() {
+        byte[][] packets = {
+                dataWithCompany("0512FC5394C37C0004FFFC040CAC364200CDCBB8334C884F"),
+                dataWithCompany("0712FC5394C37C0004FFFC040CAC364200CDCBB8334C884F"), // unknown format
+                dataWithCompany("058000FFFFFFFF800080008000FFFFFFFFFFFFFFFFFFFFFF"),
+                dataWithCompany("06170C5668C79E007000C90501D94ACD014C884F") };
+        int[] offsets = new int[packets.length];
+        int[] lengths = new int[packets.length];
+        byte[] data = new byte[200];
+        int position = 0;
+        for (int i = 0; i < packets.length; i++) {
+            offsets[i] = position;
+            lengths[i] = packets[i].length;
+            System.arraycopy(packets[i], 0, data, position, packets[i].length);
+            position += packets[i].length;
+        }
+
+        MeasurementColumns columns = new MeasurementColumns(100);
+        assertEquals(3, new BatchParser().parse(data, offsets, lengths, packets.length, columns));
+        assertEquals(4, columns.size());
+        assertEquals(5, columns.getDataFormat()[0]);
+        assertEquals(0, columns.getDataFormat()[1]);
+        assertEquals(5, columns.getDataFormat()[2]);
+        assertEquals(6, columns.getDataFormat()[3]);
+
+        double[] temperature = columns.getDoubleColumn(MeasurementField.TEMPERATURE);
+        assertTrue(columns.isValid(MeasurementField.TEMPERATURE, 0));
+        assertEquals(24.3, temperature[0]);
+        assertFalse(columns.isValid(MeasurementField.TEMPERATURE, 1));
+        assertFalse(columns.isValid(MeasurementField.TEMPERATURE, 2));
+        assertEquals(29.5, temperature[3], 0.01);
+        assertEquals(0b1001L, columns.getValidity(MeasurementField.TEMPERATURE)[0]);
+
+        int[] co2 = columns.getIntColumn(MeasurementField.CO2);
+        assertEquals(0b1000L, columns.getValidity(MeasurementField.CO2)[0]);
+        assertEquals(201, co2[3]);
+        assertEquals(1, columns.getIntColumn(MeasurementField.CALIBRATION_IN_PROGRESS)[3]);
+        assertEquals(205, columns.getIntColumn(MeasurementField.MEASUREMENT_SEQUENCE_NUMBER)[0]);
+
+        // columns are reused for the next batch
+        assertEquals(1, new BatchParser().parse(data, offsets, lengths, 1, columns));
+        assertEquals(1, columns.size());
+        assertEquals(0b1L, columns.getValidity(MeasurementField.TEMPERATURE)[0]);
+        assertEquals(0L, columns.getValidity(MeasurementField.CO2)[0]);
+    }
+
+    @Test
+    public void testEddystoneDataFormatDiscrimination() {
+        DataFormat2Parser dataFormat2Parser = new DataFormat2Parser();
+        DataFormat4Parser dataFormat4Parser = new DataFormat4Parser();
+        byte[] v2 = eddystoneData("AjwYAMFc");
+        byte[] v4 = eddystoneData("BHAVAMFci");
+        assertNotNull(dataFormat2Parser.parse(v2));
+        assertNull(dataFormat4Parser.parse(v2));
+        assertNull(dataFormat2Parser.parse(v4));
+        RuuviMeasurement m = dataFormat4Parser.parse(v4);
+        assertEquals((Integer) 4, m.getDataFormat());
+        assertEquals(21.0, m.getTemperature());
+        assertEquals(56.0, m.getHumidity());
+        assertEquals(99500.0, m.getPressure());
+        assertEquals(m.toString(), parser.parse(v4).toString());
+
+        // URL-safe and traditional base64 characters
+        assertEquals(parser.parse(eddystoneData("Aj-YAMFc")).toString(), parser.parse(eddystoneData("Aj+YAMFc")).toString());
+        assertEquals(parser.parse(eddystoneData("Aj_YAMFc")).toString(), parser.parse(eddystoneData("Aj/YAMFc")).toString());
+        // padding is accepted when it completes the last quantum, as with java.util.Base64
+        String expected = parser.parse(eddystoneData("AjwYAMFc")).toString();
+        assertEquals(expected, parser.parse(eddystoneData("AjwYAMFcAA==")).toString());
+        assertEquals(expected, parser.parse(eddystoneData("AjwYAMFcAAA=")).toString());
+        assertEquals(expected, parser.parse(eddystoneData("AjwYAMFcAA")).toString());
+        assertEquals(expected, new DataFormat2Parser().parse(eddystoneData("AjwYAMFcAA==")).toString());
+        assertEquals(parser.parse(eddystoneData("BHAVAMFci")).toString(), parser.parse(eddystoneData("BHAVAMFcAA==i")).toString());
+        PrimitiveRuuviMeasurement primitive = new PrimitiveRuuviMeasurement();
+        for (String hash : new String[] { "AjwYAMFcAA=", "AjwYAMFc====", "AjwYAMFcA===", "AjwYAMFc=AAA", "AjwY=MFc" }) {
+            byte[] data = eddystoneData(hash);
+            assertEquals(hash, ParseStatus.MALFORMED, new DataFormat2Parser().parse(data, 0, data.length, primitive));
+        }
+    }
+
+    @Test
+    public void testInvalidEddystone() {
+        assertNull(parser.parse(eddystoneData("AjwYAM"))); // too short
+        assertNull(parser.parse(eddystoneData("AjwYAM!c"))); // not base64
+        assertNull(parser.parse(eddystoneData("AjwYAMFc!!!!"))); // not base64 after the measurement
+        assertNull(parser.parse(eddystoneData("A3wYAMFc"))); // unknown data format
+        byte[] data = eddystoneData("AjwYAMFc");
+        data[9] = 'w'; // ruu.wi
+        assertNull(parser.parse(data));
+        data = eddystoneData("AjwYAMFc");
+        data[4] = 0x02; // http://www.
+        assertNull(parser.parse(data));
+    }
+
+    @Test
+    public void testParseStatus() {
+        PrimitiveRuuviMeasurement m = new PrimitiveRuuviMeasurement();
+        byte[] valid = dataWithCompany("0512FC5394C37C0004FFFC040CAC364200CDCBB8334C884F");
+        assertEquals(ParseStatus.OK, parser.parse(valid, 0, valid.length, m));
+        assertEquals(ParseStatus.NOT_RUUVI, parser.parse(valid, 1, valid.length - 1, m));
+        assertEquals(ParseStatus.NOT_RUUVI, parser.parse(valid, 0, 1, m));
+        assertEquals(ParseStatus.TRUNCATED, parser.parse(valid, 0, 2, m));
+        assertEquals(ParseStatus.TRUNCATED, parser.parse(valid, 0, valid.length - 1, m));
+        byte[] unknown = dataWithCompany("0712FC5394C37C0004FFFC040CAC364200CDCBB8334C884F");
+        assertEquals(ParseStatus.UNKNOWN_FORMAT, parser.parse(unknown, 0, unknown.length, m));
+        assertEquals(ParseStatus.UNKNOWN_FORMAT, new DataFormat6Parser().parse(valid, 0, valid.length, m));
+        assertEquals(5, m.getDataFormat()); // left untouched by the failures
+
+        assertEquals(ParseStatus.OK, parse(eddystoneData("AjwYAMFc"), m));
+        assertEquals(ParseStatus.OK, parse(eddystoneData("BHAVAMFci"), m));
+        assertEquals(ParseStatus.TRUNCATED, parse(eddystoneData("AjwYAM"), m));
+        assertEquals(ParseStatus.TRUNCATED, parse(Arrays.copyOf(eddystoneData("AjwYAMFc"), 9), m));
+        assertEquals(ParseStatus.MALFORMED, parse(eddystoneData("AjwYAM!c"), m));
+        assertEquals(ParseStatus.UNKNOWN_FORMAT, parse(eddystoneData("A3wYAMFc"), m));
+        byte[] data = eddystoneData("AjwYAMFc");
+        data[9] = 'w'; // ruu.wi
+        assertEquals(ParseStatus.NOT_RUUVI, parse(data, m));
+        assertEquals(ParseStatus.NOT_RUUVI, parse(Arrays.copyOf(data, 10), m));
+    }
+
+    @Test
+    public void testMeteredParser() {
+        ParserMetrics metrics = new ParserMetrics();
+        DataFormatParser metered = new MeteredDataFormatParser(metrics);
+        byte[] df5 = dataWithCompany("0512FC5394C37C0004FFFC040CAC364200CDCBB8334C884F");
+        byte[] df6 = dataWithCompany("06170C5668C79E007000C90501D94ACD004C884F");
+        assertEquals(parser.parse(df5).toString(), metered.parse(df5).toString());
+        assertNotNull(metered.parse(df5));
+        assertNotNull(metered.parse(df6));
+        assertNotNull(metered.parse(eddystoneData("AjwYAMFc")));
+        assertNull(metered.parse(dataWithCompany("07")));
+        assertNull(metered.parse(df6, 0, 10));
+        assertNull(metered.parse(new byte[] { 0x01, 0x02, 0x03 }));
+
+        ParserMetrics.Snapshot snapshot = metrics.snapshot();
+        assertEquals(7, snapshot.getTotal());
+        assertEquals(4, snapshot.getCount(ParseStatus.OK));
+        assertEquals(1, snapshot.getCount(ParseStatus.UNKNOWN_FORMAT));
+        assertEquals(1, snapshot.getCount(ParseStatus.TRUNCATED));
+        assertEquals(1, snapshot.getCount(ParseStatus.NOT_RUUVI));
+        assertEquals(0, snapshot.getCount(ParseStatus.MALFORMED));
+        assertEquals(2, snapshot.getCount(5));
+        assertEquals(1, snapshot.getCount(6));
+        assertEquals(1, snapshot.getCount(2));
+        assertEquals(0, snapshot.getCount(3));
+        assertEquals(7, Arrays.stream(snapshot.getLatencyHistogram()).sum());
+
+        // snapshots do not change afterwards
+        metered.parse(df5);
+        assertEquals(7, snapshot.getTotal());
+        assertEquals(8, metrics.snapshot().getTotal());
+    }
+
+    @Test
+    public void testParserMetricsLatencyBuckets() {
+        assertEquals(0, ParserMetrics.latencyBucket(0));
+        assertEquals(1, ParserMetrics.latencyBucket(1));
+        assertEquals(2, ParserMetrics.latencyBucket(2));
+        assertEquals(2, ParserMetrics.latencyBucket(3));
+        assertEquals(11, ParserMetrics.latencyBucket(1500));
+        assertEquals(ParserMetrics.LATENCY_BUCKETS - 1, ParserMetrics.latencyBucket(Long.MAX_VALUE));
+        assertEquals(2048, ParserMetrics.latencyBucketUpperBound(11));
+        assertEquals(Long.MAX_VALUE, ParserMetrics.latencyBucketUpperBound(ParserMetrics.LATENCY_BUCKETS - 1));
+    }
+
+    @Test
+    public void testParseHex() {
+        String hex = "99040512FC5394C37C0004FFFC040CAC364200CDCBB8334C884F";
+        assertEquals(parser.parse(dataWithCompany(hex.substring(4))).toString(), parser.parseHex(hex).toString());
+        assertEquals(24.3, parser.parseHex(hex.toLowerCase()).getTemperature());
+        assertNull(parser.parseHex(hex.substring(1)));
+        assertNull(parser.parseHex("99040512FC5394C37C0004FFFC040CAC364200CDCBB8334C884G"));
+
+        byte[] buffer = new byte[32];
+        PrimitiveRuuviMeasurement m = new PrimitiveRuuviMeasurement();
+        assertEquals(ParseStatus.OK, parser.parseHex(hex, buffer, m));
+        assertEquals(205, m.getMeasurementSequenceNumber());
+        assertEquals(ParseStatus.MALFORMED, parser.parseHex(hex.substring(1), buffer, m));
+        assertEquals(ParseStatus.TRUNCATED, parser.parseHex(hex.substring(0, 20), buffer, m));
+        assertEquals(205, m.getMeasurementSequenceNumber());
+        try {
+            parser.parseHex(hex, new byte[10], m);
+            fail();
+        } catch (IndexOutOfBoundsException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testMac() {
+        byte[] df5 = dataWithCompany("0512FC5394C37C0004FFFC040CAC364200CDCBB8334C884F");
+        byte[] e1 = dataWithCompany("E1170C5668C79E0065007004BD11CA00C9050113E0AC3D4A9CDECDEE00FFFFFFFFFFCBB8334C884F");
+        assertEquals((Long) 0xCBB8334C884FL, parser.parse(df5).getMac());
+        assertEquals((Long) 0xCBB8334C884FL, parser.parse(e1).getMac());
+        assertNull(parser.parse(dataWithCompany("058000FFFFFFFF800080008000FFFFFFFFFFFFFFFFFFFFFF")).getMac());
+        assertNull(parser.parse(dataWithCompany("06170C5668C79E007000C90501D94ACD004C884F")).getMac());
+
+        PrimitiveRuuviMeasurement m = new PrimitiveRuuviMeasurement();
+        DataFormatParser macOnly = new AnyDataFormatParser(EnumSet.of(MeasurementField.MAC));
+        assertEquals(ParseStatus.OK, macOnly.parse(e1, 0, e1.length, m));
+        assertEquals(MeasurementField.MAC.mask(), m.getPresenceMask());
+        assertEquals(0xCBB8334C884FL, m.getMac());
+        m.reset(5);
+        assertEquals(0, m.getMac());
+
+        LazyRuuviMeasurement lazy = new LazyRuuviMeasurement();
+        assertTrue(lazy.wrap(df5, 0, df5.length));
+        assertEquals((Long) 0xCBB8334C884FL, lazy.getMac());
+
+        MeasurementColumns columns = new MeasurementColumns(2);
+        byte[] data = new byte[df5.length + e1.length];
+        System.arraycopy(df5, 0, data, 0, df5.length);
+        System.arraycopy(e1, 0, data, df5.length, e1.length);
+        new BatchParser().parse(data, new int[] { 0, df5.length }, new int[] { df5.length, e1.length }, 2, columns);
+        assertEquals(0b11L, columns.getValidity(MeasurementField.MAC)[0]);
+        assertEquals(0xCBB8334C884FL, columns.getLongColumn(MeasurementField.MAC)[1]);
+        try {
+            columns.getIntColumn(MeasurementField.MAC);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testDataFormat6LuminosityTable() {
+        byte[] data = ByteUtils.decodeHex("990406170C5668C79E007000C90501D94ACD004C884F");
+        DataFormat6Parser parser = new DataFormat6Parser();
+        PrimitiveRuuviMeasurement m = new PrimitiveRuuviMeasurement();
+        for (int code = 0; code < 255; code++) {
+            data[15] = (byte) code;
+            assertEquals(ParseStatus.OK, parser.parse(data, 0, data.length, m));
+            // exactly the value of the logarithmic formula
+            assertEquals(Math.exp(code * (Math.log(65536d) / 254d)) - 1, m.getLuminosity(), 0);
+        }
+        data[15] = 0;
+        parser.parse(data, 0, data.length, m);
+        assertEquals(0, m.getLuminosity(), 0);
+        data[15] = (byte) 0xFF;
+        parser.parse(data, 0, data.length, m);
+        assertFalse(m.has(MeasurementField.LUMINOSITY));
+    }
+
+    private ParseStatus parse(byte[] data, PrimitiveRuuviMeasurement m) {
+        return parser.parse(data, 0, data.length, m);
+    }
 }
@@ -0,0 +1,169 @@
+package fi.tkgwf.ruuvi.common;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import fi.tkgwf.ruuvi.common.bean.PrimitiveRuuviMeasurement;
+import fi.tkgwf.ruuvi.common.parser.impl.AnyDataFormatParser;
+import fi.tkgwf.ruuvi.common.parser.ParseStatus;
+import fi.tkgwf.ruuvi.common.tracking.RawFrameCache;
+import fi.tkgwf.ruuvi.common.tracking.ReceptionTracker;
+import fi.tkgwf.ruuvi.common.tracking.SequenceDeduplicator;
+import fi.tkgwf.ruuvi.common.tracking.SequenceNumbers;
+import fi.tkgwf.ruuvi.common.utils.ByteUtils;
+import junit.framework.TestCase;
+
+public class TrackingTest extends TestCase {
+
+    private static final long MAC = 0xCBB8334C884FL;
+    private static final String DATA_FORMAT_5 = "99040512FC5394C37C0004FFFC040CAC364200CDCBB8334C884F";
+    private static final String DATA_FORMAT_3 = "990403291A1ECE1EFC18F94202CA0B53";
+
+    @Test
+    public void testSequenceDistance() {
+        assertEquals(16, SequenceNumbers.bits(5));
+        assertEquals(8, SequenceNumbers.bits(6));
+        assertEquals(24, SequenceNumbers.bits(0xE1));
+        assertEquals(0, SequenceNumbers.bits(3));
+        assertEquals(1, SequenceNumbers.distance(10, 11, 16));
+        assertEquals(-1, SequenceNumbers.distance(11, 10, 16));
+        assertEquals(2, SequenceNumbers.distance(65535, 1, 16));
+        assertEquals(-2, SequenceNumbers.distance(1, 65535, 16));
+        assertEquals(5, SequenceNumbers.distance(253, 2, 8));
+        assertEquals(128, SequenceNumbers.distance(0, 128, 8));
+        assertEquals(-127, SequenceNumbers.distance(0, 129, 8));
+        assertEquals(3, SequenceNumbers.distance(0xFFFFFE, 1, 24));
+    }
+
+    @Test
+    public void testDeduplicateSequenceNumbers() {
+        SequenceDeduplicator deduplicator = new SequenceDeduplicator();
+        assertFalse(deduplicator.isDuplicate(MAC, 5, 100));
+        assertTrue(deduplicator.isDuplicate(MAC, 5, 100));
+        assertFalse(deduplicator.isDuplicate(MAC, 5, 102));
+        assertFalse(deduplicator.isDuplicate(MAC, 5, 101)); // out of order
+        assertTrue(deduplicator.isDuplicate(MAC, 5, 101));
+        assertTrue(deduplicator.isDuplicate(MAC, 5, 100));
+        assertTrue(deduplicator.isDuplicate(MAC, 5, 99)); // before the first one
+        // tracked separately per tag and data format
+        assertFalse(deduplicator.isDuplicate(MAC + 1, 5, 100));
+        assertFalse(deduplicator.isDuplicate(MAC, 0xE1, 100));
+        // formats without a sequence number are never duplicates
+        assertFalse(deduplicator.isDuplicate(MAC, 3, 0));
+        assertFalse(deduplicator.isDuplicate(MAC, 3, 0));
+        // wrap around of an 8 bit counter
+        assertFalse(deduplicator.isDuplicate(MAC, 6, 255));
+        assertFalse(deduplicator.isDuplicate(MAC, 6, 0));
+        assertTrue(deduplicator.isDuplicate(MAC, 6, 255));
+        assertTrue(deduplicator.isDuplicate(MAC, 6, 0));
+        // a jump far behind is a restarted counter, after which the old values are new again
+        assertFalse(deduplicator.isDuplicate(MAC, 5, 1000));
+        assertFalse(deduplicator.isDuplicate(MAC, 5, 0));
+        assertTrue(deduplicator.isDuplicate(MAC, 5, 0));
+        deduplicator.forget(MAC);
+        assertFalse(deduplicator.isDuplicate(MAC, 5, 0));
+        assertTrue(deduplicator.isDuplicate(MAC + 1, 5, 100));
+        deduplicator.clear();
+        assertFalse(deduplicator.isDuplicate(MAC + 1, 5, 100));
+    }
+
+    @Test
+    public void testDeduplicatePackets() {
+        SequenceDeduplicator deduplicator = new SequenceDeduplicator();
+        byte[] df5 = ByteUtils.decodeHex(DATA_FORMAT_5);
+        assertFalse(deduplicator.isDuplicate(MAC, df5, 0, df5.length));
+        assertTrue(deduplicator.isDuplicate(MAC, df5, 0, df5.length));
+        PrimitiveRuuviMeasurement m = new PrimitiveRuuviMeasurement();
+        assertTrue(new AnyDataFormatParser().parse(df5, 0, df5.length, m).isOk());
+        assertTrue(deduplicator.isDuplicate(m));
+        byte[] df3 = ByteUtils.decodeHex(DATA_FORMAT_3);
+        assertFalse(deduplicator.isDuplicate(MAC, df3, 0, df3.length));
+        assertFalse(deduplicator.isDuplicate(MAC, df3, 0, df3.length));
+    }
+
+    @Test
+    public void testRawFrameCache() {
+        RawFrameCache cache = new RawFrameCache();
+        PrimitiveRuuviMeasurement m = new PrimitiveRuuviMeasurement();
+        byte[] df3 = ByteUtils.decodeHex("00" + DATA_FORMAT_3);
+        assertFalse(cache.isRepeat(MAC, df3, 1, df3.length - 1));
+        assertEquals(ParseStatus.OK, cache.parse(MAC, df3, 1, df3.length - 1, m));
+        assertFalse(cache.wasRepeat());
+        String first = m.toString();
+
+        PrimitiveRuuviMeasurement repeated = new PrimitiveRuuviMeasurement();
+        byte[] copy = ByteUtils.decodeHex(DATA_FORMAT_3);
+        assertTrue(cache.isRepeat(MAC, copy, 0, copy.length));
+        assertEquals(ParseStatus.OK, cache.parse(MAC, copy, 0, copy.length, repeated));
+        assertTrue(cache.wasRepeat());
+        assertEquals(first, repeated.toString());
+
+        // another tag, a changed packet and a shorter packet are not repeats
+        assertEquals(ParseStatus.OK, cache.parse(MAC + 1, copy, 0, copy.length, m));
+        assertFalse(cache.wasRepeat());
+        copy[copy.length - 1]++;
+        assertEquals(ParseStatus.OK, cache.parse(MAC, copy, 0, copy.length, m));
+        assertFalse(cache.wasRepeat());
+        assertFalse(cache.isRepeat(MAC, copy, 0, copy.length - 1));
+        assertEquals(ParseStatus.TRUNCATED, cache.parse(MAC, copy, 0, 5, m));
+        assertFalse(cache.wasRepeat());
+        assertTrue(cache.isRepeat(MAC, copy, 0, copy.length));
+
+        cache.forget(MAC);
+        assertFalse(cache.isRepeat(MAC, copy, 0, copy.length));
+        cache.clear();
+        assertFalse(cache.isRepeat(MAC + 1, df3, 1, df3.length - 1));
+    }
+
+    @Test
+    public void testReceptionTracker() {
+        ReceptionTracker tracker = new ReceptionTracker();
+        assertNull(tracker.getStatistics(MAC, 5));
+        assertTrue(tracker.record(MAC, 5, 65530));
+        assertFalse(tracker.record(MAC, 5, 65530));
+        assertTrue(tracker.record(MAC, 5, 65531));
+        assertTrue(tracker.record(MAC, 5, 65534)); // 2 lost
+        assertTrue(tracker.record(MAC, 5, 10)); // 11 lost across the wrap around
+        assertTrue(tracker.record(MAC, 5, 65535)); // arrived late
+        assertFalse(tracker.record(MAC, 5, 65535));
+        assertFalse(tracker.record(MAC, 5, 65529)); // before the first one
+        assertFalse(tracker.record(MAC, 3, 0));
+
+        ReceptionTracker.Statistics statistics = tracker.getStatistics(MAC, 5);
+        assertEquals(5, statistics.getReceived());
+        assertEquals(12, statistics.getLost());
+        assertEquals(17, statistics.getExpected());
+        assertEquals(3, statistics.getDuplicates());
+        assertEquals(0, statistics.getRestarts());
+        assertEquals(5 / 17d, statistics.getReceptionRatio(), 1e-9);
+        long[] gaps = new long[ReceptionTracker.GAP_BUCKETS];
+        gaps[1] = 1;
+        gaps[3] = 1;
+        assertTrue(Arrays.equals(gaps, statistics.getGapHistogram()));
+
+        assertTrue(tracker.record(MAC, 5, 60000)); // far behind, a restarted counter
+        assertEquals(1, tracker.getStatistics(MAC, 5).getRestarts());
+        assertEquals(12, tracker.getStatistics(MAC, 5).getLost());
+        assertEquals(0, ReceptionTracker.gapBucket(1));
+        assertEquals(ReceptionTracker.GAP_BUCKETS - 1, ReceptionTracker.gapBucket(Integer.MAX_VALUE));
+
+        PrimitiveRuuviMeasurement m = new PrimitiveRuuviMeasurement();
+        m.reset(6);
+        m.setMeasurementSequenceNumber(255);
+        tracker.onMeasurement(MAC, -70, m);
+        m.setMeasurementSequenceNumber(1);
+        tracker.onMeasurement(MAC, -70, m);
+        assertEquals(1, tracker.getStatistics(MAC, 6).getLost());
+        int[] visited = new int[1];
+        tracker.forEach((mac, dataFormat, s) -> {
+            assertEquals(MAC, mac);
+            visited[0] += dataFormat;
+        });
+        assertEquals(11, visited[0]);
+        tracker.forget(MAC, 6);
+        assertNull(tracker.getStatistics(MAC, 6));
+        tracker.clear();
+        assertNull(tracker.getStatistics(MAC, 5));
+    }
+}
@@ -1,9 +1,18 @@
 package fi.tkgwf.ruuvi.common;
 
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
 import org.junit.Test;
 
+import fi.tkgwf.ruuvi.common.utils.ByteLookupTable;
 import fi.tkgwf.ruuvi.common.utils.ByteUtils;
+import fi.tkgwf.ruuvi.common.utils.LongIntMap;
+import fi.tkgwf.ruuvi.common.utils.LongObjectMap;
 import fi.tkgwf.ruuvi.common.utils.MeasurementValueCalculator;
+import fi.tkgwf.ruuvi.common.utils.PrimitiveMeasurementValueCalculator;
 import junit.framework.TestCase;
 
 public class UtilsTest extends TestCase {
@@ -60,6 +69,63 @@ public class UtilsTest extends TestCase {
         assertFalse(ByteUtils.isMaxUnsignedShort((byte) 0, (byte) 0)); // 0x0000
     }
 
+    @Test
+    public void testHexValue() {
+        assertEquals(0, ByteUtils.hexValue('0'));
+        assertEquals(9, ByteUtils.hexValue('9'));
+        assertEquals(10, ByteUtils.hexValue('a'));
+        assertEquals(15, ByteUtils.hexValue('F'));
+        assertEquals(-1, ByteUtils.hexValue('g'));
+        assertEquals(-1, ByteUtils.hexValue(' '));
+        assertEquals(-1, ByteUtils.hexValue(-1));
+        assertEquals(-1, ByteUtils.hexValue('\u00e4'));
+    }
+
+    @Test
+    public void testDecodeHex() {
+        byte[] dest = new byte[6];
+        assertEquals(3, ByteUtils.decodeHex("xx0aFf80", 2, 8, dest, 1));
+        assertEquals(0x00, dest[0]);
+        assertEquals(0x0A, dest[1]);
+        assertEquals((byte) 0xFF, dest[2]);
+        assertEquals((byte) 0x80, dest[3]);
+        assertEquals(0, ByteUtils.decodeHex("", 0, 0, dest, 0));
+        assertEquals(-1, ByteUtils.decodeHex("0aF", 0, 3, dest, 0));
+        assertEquals(-1, ByteUtils.decodeHex("0x", 0, 2, dest, 0));
+
+        byte[] ascii = "990405".getBytes();
+        assertEquals(3, ByteUtils.decodeHex(ascii, 0, ascii.length, ascii, 0)); // in place
+        assertEquals((byte) 0x99, ascii[0]);
+        assertEquals(0x04, ascii[1]);
+        assertEquals(0x05, ascii[2]);
+        assertEquals(-1, ByteUtils.decodeHex("0-".getBytes(), 0, 2, dest, 0));
+
+        assertEquals("[1, -85]", Arrays.toString(ByteUtils.decodeHex("01ab")));
+        assertNull(ByteUtils.decodeHex("01a"));
+        try {
+            ByteUtils.decodeHex("0102", 0, 4, dest, 5);
+            fail();
+        } catch (IndexOutOfBoundsException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testFormatMac() {
+        assertEquals("CB:B8:33:4C:88:4F", ByteUtils.formatMac(0xCBB8334C884FL));
+        assertEquals("00:00:00:00:00:01", ByteUtils.formatMac(1));
+        assertEquals("FF:FF:FF:FF:FF:FF", ByteUtils.formatMac(0xFFFFFFFFFFFFL));
+    }
+
+    @Test
+    public void testByteLookupTable() {
+        ByteLookupTable table = ByteLookupTable.of(code -> code * 2 - 40);
+        assertEquals(-40, table.get((byte) 0), 0);
+        assertEquals(0, table.get((byte) 20), 0);
+        assertEquals(470, table.get((byte) 0xFF), 0);
+        assertEquals(216, table.get((byte) 0x80), 0);
+    }
+
     // ============= MeasurementValueCalculator Tests =============
 
     @Test
@@ -235,4 +301,156 @@ public class UtilsTest extends TestCase {
         assertNotNull(result);
         assertTrue(result >= 0 && result <= 100);
     }
+
+    @Test
+    public void testPrimitiveCalculatorsMatchBoxed() {
+        double[][] inputs = { { 20.0, 50.0, 101325.0, 12.0, 800 }, { -40.0, 100.0, 95000.0, 0.0, 420 },
+                { 25.0, 20.0, 100000.0, 70.0, 3000 } };
+        for (double[] in : inputs) {
+            assertEquals(MeasurementValueCalculator.absoluteHumidity(in[0], in[1]),
+                    PrimitiveMeasurementValueCalculator.absoluteHumidity(in[0], in[1]), 0);
+            assertEquals(MeasurementValueCalculator.dewPoint(in[0], in[1]),
+                    PrimitiveMeasurementValueCalculator.dewPoint(in[0], in[1]), 0);
+            assertEquals(MeasurementValueCalculator.equilibriumVaporPressure(in[0]),
+                    PrimitiveMeasurementValueCalculator.equilibriumVaporPressure(in[0]), 0);
+            assertEquals(MeasurementValueCalculator.airDensity(in[0], in[1], in[2]),
+                    PrimitiveMeasurementValueCalculator.airDensity(in[0], in[1], in[2]), 0);
+            assertEquals(MeasurementValueCalculator.airQualityIndex(in[3], (int) in[4]),
+                    PrimitiveMeasurementValueCalculator.airQualityIndex(in[3], (int) in[4]), 0);
+            assertEquals(MeasurementValueCalculator.totalAcceleration(in[0], in[1], in[3]),
+                    PrimitiveMeasurementValueCalculator.totalAcceleration(in[0], in[1], in[3]), 0);
+        }
+        assertEquals(45.0, PrimitiveMeasurementValueCalculator.angleBetweenVectorComponentAndAxis(1, Math.sqrt(2)), 0.001);
+    }
+
+    @Test
+    public void testPrimitiveCalculatorsNotAvailable() {
+        assertTrue(Double.isNaN(PrimitiveMeasurementValueCalculator.totalAcceleration(Double.NaN, 1, 1)));
+        assertTrue(Double.isNaN(PrimitiveMeasurementValueCalculator.angleBetweenVectorComponentAndAxis(1, 0)));
+        assertTrue(Double.isNaN(PrimitiveMeasurementValueCalculator.absoluteHumidity(20, Double.NaN)));
+        assertTrue(Double.isNaN(PrimitiveMeasurementValueCalculator.dewPoint(20, 0)));
+        assertTrue(Double.isNaN(PrimitiveMeasurementValueCalculator.dewPoint(Double.NaN, 50)));
+        assertTrue(Double.isNaN(PrimitiveMeasurementValueCalculator.airDensity(20, 50, Double.NaN)));
+        assertTrue(Double.isNaN(PrimitiveMeasurementValueCalculator.airQualityIndex(Double.NaN, 800)));
+    }
+
+    @Test
+    public void testBatchCalculators() {
+        double[] temperature = { 99, 20.0, -40.0, 25.0, Double.NaN, 0.0 };
+        double[] humidity = { 99, 50.0, 100.0, 20.0, 50.0, 0.0 };
+        double[] pressure = { 99, 101325.0, 95000.0, 100000.0, 100000.0, Double.NaN };
+        double[] result = new double[7];
+        int rows = temperature.length - 1;
+
+        PrimitiveMeasurementValueCalculator.dewPoint(temperature, humidity, 1, result, 2, rows);
+        for (int i = 0; i < rows; i++) {
+            assertEquals(PrimitiveMeasurementValueCalculator.dewPoint(temperature[i + 1], humidity[i + 1]), result[i + 2], 0);
+        }
+        assertTrue(Double.isNaN(result[5]));
+        assertTrue(Double.isNaN(result[6]));
+        assertEquals(0, result[0], 0);
+        assertEquals(0, result[1], 0);
+
+        PrimitiveMeasurementValueCalculator.absoluteHumidity(temperature, humidity, 1, result, 0, rows);
+        for (int i = 0; i < rows; i++) {
+            assertEquals(PrimitiveMeasurementValueCalculator.absoluteHumidity(temperature[i + 1], humidity[i + 1]), result[i], 0);
+        }
+        PrimitiveMeasurementValueCalculator.equilibriumVaporPressure(temperature, 1, result, 0, rows);
+        for (int i = 0; i < rows; i++) {
+            assertEquals(PrimitiveMeasurementValueCalculator.equilibriumVaporPressure(temperature[i + 1]), result[i], 0);
+        }
+        PrimitiveMeasurementValueCalculator.airDensity(temperature, humidity, pressure, 1, result, 0, rows);
+        for (int i = 0; i < rows; i++) {
+            assertEquals(PrimitiveMeasurementValueCalculator.airDensity(temperature[i + 1], humidity[i + 1], pressure[i + 1]),
+                    result[i], 0);
+        }
+        PrimitiveMeasurementValueCalculator.totalAcceleration(temperature, humidity, pressure, 1, result, 0, rows);
+        for (int i = 0; i < rows; i++) {
+            assertEquals(PrimitiveMeasurementValueCalculator.totalAcceleration(temperature[i + 1], humidity[i + 1], pressure[i + 1]),
+                    result[i], 0);
+        }
+    }
+
+    // ============= Map Tests =============
+
+    @Test
+    public void testLongObjectMap() {
+        LongObjectMap<String> map = new LongObjectMap<>();
+        assertTrue(map.isEmpty());
+        assertNull(map.get(0xCBB8334C884FL));
+        assertNull(map.put(0xCBB8334C884FL, "a"));
+        assertNull(map.put(0, "zero"));
+        assertEquals("a", map.put(0xCBB8334C884FL, "b"));
+        assertEquals("b", map.get(0xCBB8334C884FL));
+        assertEquals("zero", map.get(0));
+        assertEquals(2, map.size());
+        assertTrue(map.containsKey(0));
+        assertFalse(map.containsKey(1));
+        assertEquals("zero", map.remove(0));
+        assertNull(map.remove(0));
+        assertEquals(1, map.size());
+        assertEquals("c", map.computeIfAbsent(1, key -> "c"));
+        assertEquals("c", map.computeIfAbsent(1, key -> "d"));
+        StringBuilder visited = new StringBuilder();
+        map.forEach((key, value) -> visited.append(key == 1 ? value : ""));
+        assertEquals("c", visited.toString());
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertNull(map.get(1));
+        try {
+            map.put(1, null);
+            fail();
+        } catch (NullPointerException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testLongIntMap() {
+        LongIntMap map = new LongIntMap();
+        assertEquals(-1, map.get(0xCBB8334C884FL));
+        assertEquals(-1, map.put(0xCBB8334C884FL, 5));
+        assertEquals(5, map.put(0xCBB8334C884FL, 6));
+        assertEquals(6, map.get(0xCBB8334C884FL));
+        assertEquals(3, map.addTo(0, 3));
+        assertEquals(5, map.addTo(0, 2));
+        assertEquals(2, map.size());
+        assertTrue(map.containsKey(0));
+        assertEquals(5, map.remove(0));
+        assertEquals(-1, map.remove(0));
+        assertFalse(map.containsKey(0));
+        long[] sum = new long[1];
+        map.forEach((key, value) -> sum[0] += value);
+        assertEquals(6, sum[0]);
+        map.clear();
+        assertEquals(0, map.size());
+        assertEquals(0, new LongIntMap(10, 0).get(1));
+    }
+
+    @Test
+    public void testLongMapsMatchHashMap() {
+        // random operations on a key range small enough to cause collisions, removals and growth
+        Random random = new Random(42);
+        LongObjectMap<Long> objects = new LongObjectMap<>(2);
+        LongIntMap ints = new LongIntMap(2, Integer.MIN_VALUE);
+        Map<Long, Long> expected = new HashMap<>();
+        for (int i = 0; i < 100000; i++) {
+            long key = 0xCBB8334C0000L + random.nextInt(3000);
+            if (random.nextInt(3) == 0) {
+                Long removed = expected.remove(key);
+                assertEquals(removed, objects.remove(key));
+                assertEquals(removed == null ? Integer.MIN_VALUE : removed.intValue(), ints.remove(key));
+            } else {
+                Long previous = expected.put(key, (long) i);
+                assertEquals(previous, objects.put(key, (long) i));
+                assertEquals(previous == null ? Integer.MIN_VALUE : previous.intValue(), ints.put(key, i));
+            }
+        }
+        assertEquals(expected.size(), objects.size());
+        assertEquals(expected.size(), ints.size());
+        for (long key = 0xCBB8334C0000L; key < 0xCBB8334C0000L + 3000; key++) {
+            assertEquals(expected.get(key), objects.get(key));
+            assertEquals(expected.containsKey(key), ints.containsKey(key));
+        }
+    }
 }
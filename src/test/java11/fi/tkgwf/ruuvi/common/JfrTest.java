@@ -0,0 +1,117 @@
+package fi.tkgwf.ruuvi.common;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import fi.tkgwf.ruuvi.common.bean.MeasurementColumns;
+import fi.tkgwf.ruuvi.common.jfr.JfrSupport;
+import fi.tkgwf.ruuvi.common.parser.impl.AnyDataFormatParser;
+import fi.tkgwf.ruuvi.common.parser.impl.BatchParser;
+import fi.tkgwf.ruuvi.common.utils.ByteUtils;
+import fi.tkgwf.ruuvi.common.utils.PrimitiveMeasurementValueCalculator;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * Tests of the Flight Recorder events, compiled and run only by the Java 11
+ * profile of the build like the events themselves. The events are enabled by
+ * name, as the event classes are internal to the library. This is a plain
+ * JUnit 4 class, as assumptions are not supported by
+ * {@link junit.framework.TestCase}.
+ */
+public class JfrTest {
+
+    private static final String PARSE = "fi.tkgwf.ruuvi.Parse";
+    private static final String REJECTED_PACKET = "fi.tkgwf.ruuvi.RejectedPacket";
+    private static final String BATCH_PARSE = "fi.tkgwf.ruuvi.BatchParse";
+    private static final String CALCULATOR_BATCH = "fi.tkgwf.ruuvi.CalculatorBatch";
+    private static final byte[] DATA_FORMAT_5 = ByteUtils.decodeHex("99040512FC5394C37C0004FFFC040CAC364200CDCBB8334C884F");
+
+    @Before
+    public void setUp() {
+        Assume.assumeTrue(JfrSupport.AVAILABLE);
+    }
+
+    private static List<RecordedEvent> record(Recording recording, Runnable action) throws IOException {
+        Path file = Files.createTempFile("ruuvi", ".jfr");
+        try {
+            recording.start();
+            action.run();
+            recording.stop();
+            recording.dump(file);
+            return RecordingFile.readAllEvents(file);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static long count(List<RecordedEvent> events, String name) {
+        return events.stream().filter(e -> e.getEventType().getName().equals(name)).count();
+    }
+
+    @Test
+    public void testParseEvents() throws IOException {
+        AnyDataFormatParser parser = new AnyDataFormatParser();
+        byte[] df5 = DATA_FORMAT_5;
+        List<RecordedEvent> events;
+        try (Recording recording = new Recording()) {
+            recording.enable(PARSE);
+            recording.enable(REJECTED_PACKET);
+            recording.enable(BATCH_PARSE);
+            events = record(recording, () -> {
+                parser.parse(df5);
+                parser.parse(df5, 0, 10);
+                new BatchParser().parse(df5, new int[] { 0, 0 }, new int[] { df5.length, 1 }, 2, new MeasurementColumns(2));
+            });
+        }
+        assertEquals(4, count(events, PARSE));
+        RecordedEvent rejected = events.stream()
+                .filter(e -> e.getEventType().getName().equals(REJECTED_PACKET))
+                .filter(e -> e.getString("status").equals("TRUNCATED")).findFirst().get();
+        assertEquals("990405", rejected.getString("header"));
+        assertEquals(10, rejected.getInt("length"));
+        RecordedEvent batch = events.stream()
+                .filter(e -> e.getEventType().getName().equals(BATCH_PARSE)).findFirst().get();
+        assertEquals(2, batch.getInt("packets"));
+        assertEquals(1, batch.getInt("parsed"));
+    }
+
+    @Test
+    public void testRejectedPacketEventWithoutParseEvent() throws IOException {
+        AnyDataFormatParser parser = new AnyDataFormatParser();
+        List<RecordedEvent> events;
+        try (Recording recording = new Recording()) {
+            recording.enable(REJECTED_PACKET);
+            events = record(recording, () -> parser.parse(DATA_FORMAT_5, 0, 10));
+        }
+        assertEquals(0, count(events, PARSE));
+        assertEquals(1, count(events, REJECTED_PACKET));
+    }
+
+    @Test
+    public void testCalculatorBatchEvent() throws IOException {
+        double[] temperature = { 20.0, 25.0, -40.0 };
+        double[] result = new double[3];
+        // not recorded while the event is not enabled
+        PrimitiveMeasurementValueCalculator.equilibriumVaporPressure(temperature, 0, result, 0, 3);
+        List<RecordedEvent> events;
+        try (Recording recording = new Recording()) {
+            recording.enable(CALCULATOR_BATCH).withoutThreshold();
+            events = record(recording,
+                    () -> PrimitiveMeasurementValueCalculator.equilibriumVaporPressure(temperature, 1, result, 0, 2));
+        }
+        assertEquals(1, count(events, CALCULATOR_BATCH));
+        RecordedEvent event = events.get(0);
+        assertEquals("equilibriumVaporPressure", event.getString("calculation"));
+        assertEquals(2, event.getInt("values"));
+    }
+}